@@ -0,0 +1,128 @@
+package com.github.rahulsmehta.fastls.api;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An {@link IntArray} split across fixed-size <code>ByteBuffer</code> segments, either direct or
+ * memory-mapped. Segmenting lifts the 2^31 byte limit of a single buffer, so an array can hold up to
+ * 2^31 - 1 values regardless of backend. Existing files can also be mapped read-only, e.g. by
+ * {@link ComponentIndex#load(File)}.
+ */
+class BufferIntArray implements IntArray {
+
+    static final int SEGMENT_SHIFT = 26;
+    private static final int SEGMENT_INTS = 1 << SEGMENT_SHIFT;
+
+    private final int length;
+    private final IntBuffer[] segments;
+    private final int segmentShift;
+    private final int segmentMask;
+
+    private BufferIntArray(int length, IntBuffer[] segments) {
+        this(length, segments, SEGMENT_SHIFT);
+    }
+
+    private BufferIntArray(int length, IntBuffer[] segments, int segmentShift) {
+        this.length = length;
+        this.segments = segments;
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1 << segmentShift) - 1;
+    }
+
+    static BufferIntArray allocateDirect(int length) {
+        IntBuffer[] segments = new IntBuffer[numSegments(length)];
+        for (int s = 0; s < segments.length; s++) {
+            segments[s] = ByteBuffer.allocateDirect(segmentInts(length, s) * Integer.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asIntBuffer();
+        }
+        return new BufferIntArray(length, segments);
+    }
+
+    static BufferIntArray allocateMapped(File directory, int length) {
+        IntBuffer[] segments = new IntBuffer[numSegments(length)];
+        try {
+            File file = File.createTempFile("fastls-state", ".bin", directory);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                 FileChannel channel = raf.getChannel()) {
+                raf.setLength((long) length * Integer.BYTES);
+                for (int s = 0; s < segments.length; s++) {
+                    long offset = (long) s * SEGMENT_INTS * Integer.BYTES;
+                    segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, offset,
+                            (long) segmentInts(length, s) * Integer.BYTES)
+                            .order(ByteOrder.nativeOrder())
+                            .asIntBuffer();
+                }
+            } finally {
+                // Mappings outlive the file name on POSIX systems; elsewhere, clean up on exit instead
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return new BufferIntArray(length, segments);
+    }
+
+    /**
+     * Maps <code>length</code> consecutive <code>int</code>s of an existing file, starting at byte
+     * <code>position</code>, without copying them, in segments of <code>2^segmentShift</code> values. Writes
+     * to the array fail; the mapping stays valid after the channel is closed.
+     */
+    static BufferIntArray mapReadOnly(FileChannel channel, long position, int length, ByteOrder order,
+                                      int segmentShift) throws IOException {
+        IntBuffer[] segments = new IntBuffer[numSegments(length, segmentShift)];
+        for (int s = 0; s < segments.length; s++) {
+            long offset = position + ((long) s << segmentShift) * Integer.BYTES;
+            segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                    (long) segmentInts(length, s, segmentShift) * Integer.BYTES)
+                    .order(order)
+                    .asIntBuffer();
+        }
+        return new BufferIntArray(length, segments, segmentShift);
+    }
+
+    private static int numSegments(int length) {
+        return numSegments(length, SEGMENT_SHIFT);
+    }
+
+    private static int numSegments(int length, int segmentShift) {
+        return (int) (((long) length + (1L << segmentShift) - 1) >>> segmentShift);
+    }
+
+    private static int segmentInts(int length, int segment) {
+        return segmentInts(length, segment, SEGMENT_SHIFT);
+    }
+
+    private static int segmentInts(int length, int segment, int segmentShift) {
+        return (int) Math.min(1L << segmentShift, (long) length - ((long) segment << segmentShift));
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public int get(int index) {
+        if (index < 0 || index >= length) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return segments[index >>> segmentShift].get(index & segmentMask);
+    }
+
+    @Override
+    public void set(int index, int value) {
+        if (index < 0 || index >= length) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        segments[index >>> segmentShift].put(index & segmentMask, value);
+    }
+}
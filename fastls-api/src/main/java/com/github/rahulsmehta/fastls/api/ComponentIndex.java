@@ -0,0 +1,169 @@
+package com.github.rahulsmehta.fastls.api;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * An immutable, flattened view of the strongly-connected components of <code>G</code>. Every vertex is
+ * labelled with a dense component id in <code>0..k-1</code>, so membership queries are a single array read.
+ * <p>
+ * Instances never change after construction and only use absolute reads, so any number of threads may
+ * query the same index concurrently without locking. An index can be persisted with {@link #writeTo(File)}
+ * and memory-mapped back into another process with {@link #load(File)}, which does not copy the labels
+ * onto the heap. The file is mapped in fixed-size segments, so an index may cover up to 2^31 - 1 vertices.
+ */
+public class ComponentIndex {
+
+    private static final int HEADER_INTS = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int numNodes;
+    private final int numComponents;
+    private final IntArray labels;
+    private final IntArray sizes;
+
+    private ComponentIndex(int numNodes, int numComponents, IntArray labels, IntArray sizes) {
+        this.numNodes = numNodes;
+        this.numComponents = numComponents;
+        this.labels = labels;
+        this.sizes = sizes;
+    }
+
+    /**
+     * Builds an index from per-vertex component keys, e.g. union-find representatives. Keys are relabelled
+     * to dense ids in order of first appearance, so vertex <code>0</code> is always in component
+     * <code>0</code>.
+     *
+     * @param keys     the component key of each vertex; every key must lie in <code>0..numNodes-1</code>.
+     * @param numNodes the number of vertices, i.e. of keys.
+     * @param storage  the backend to allocate scratch space from.
+     * @return an index over the given components.
+     */
+    static ComponentIndex fromKeys(IntArray keys, int numNodes, StorageBackend storage) {
+        IntArray denseIds = storage.allocate(Math.max(1, numNodes));
+        int[] labels = new int[numNodes];
+        int[] sizes = new int[numNodes];
+        int numComponents = 0;
+        for (int i = 0; i < numNodes; i++) {
+            int key = keys.get(i);
+            if (denseIds.get(key) == 0) {
+                denseIds.set(key, ++numComponents);
+            }
+            int component = denseIds.get(key) - 1;
+            labels[i] = component;
+            sizes[component]++;
+        }
+        storage.release(denseIds);
+        return new ComponentIndex(numNodes, numComponents,
+                new HeapIntArray(labels), new HeapIntArray(Arrays.copyOf(sizes, numComponents)));
+    }
+
+    /**
+     * Memory-maps an index previously written with {@link #writeTo(File)}.
+     *
+     * @param file the file holding the index.
+     * @return a read-only index backed by the mapped file.
+     */
+    public static ComponentIndex load(File file) {
+        return load(file, BufferIntArray.SEGMENT_SHIFT);
+    }
+
+    static ComponentIndex load(File file, int segmentShift) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_INTS * Integer.BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IllegalArgumentException("Malformed component index");
+                }
+            }
+            int numNodes = header.getInt(0);
+            int numComponents = header.getInt(Integer.BYTES);
+            if (numNodes < 0 || numComponents < 0
+                    || channel.size() != (HEADER_INTS + (long) numNodes + numComponents) * Integer.BYTES) {
+                throw new IllegalArgumentException("Malformed component index");
+            }
+
+            long labelsPosition = (long) HEADER_INTS * Integer.BYTES;
+            long sizesPosition = labelsPosition + (long) numNodes * Integer.BYTES;
+            return new ComponentIndex(numNodes, numComponents,
+                    BufferIntArray.mapReadOnly(channel, labelsPosition, numNodes, ByteOrder.BIG_ENDIAN, segmentShift),
+                    BufferIntArray.mapReadOnly(channel, sizesPosition, numComponents, ByteOrder.BIG_ENDIAN,
+                            segmentShift));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Persists the index so it can be memory-mapped with {@link #load(File)}: a header holding the number of
+     * vertices and of components, followed by the label of every vertex and the size of every component, all
+     * as big-endian <code>int</code>s.
+     *
+     * @param file the file to write; it is overwritten if it already exists.
+     */
+    public void writeTo(File file) {
+        try (FileOutputStream fileOut = new FileOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, BUFFER_SIZE))) {
+            out.writeInt(numNodes);
+            out.writeInt(numComponents);
+            for (int node = 0; node < numNodes; node++) {
+                out.writeInt(labels.get(node));
+            }
+            for (int component = 0; component < numComponents; component++) {
+                out.writeInt(sizes.get(component));
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the component id of a vertex.
+     *
+     * @param node the vertex to look up.
+     * @return the id of the vertex's component, in <code>0..numComponents()-1</code>.
+     */
+    public int componentOf(int node) {
+        return labels.get(node);
+    }
+
+    /**
+     * Checks if two vertices lie in the same strongly-connected component.
+     *
+     * @param u the first vertex
+     * @param v the second vertex
+     * @return whether or not <code>u</code> and <code>v</code> are strongly connected.
+     */
+    public boolean sameComponent(int u, int v) {
+        return labels.get(u) == labels.get(v);
+    }
+
+    /**
+     * Returns the number of vertices in a component.
+     *
+     * @param componentId the id of the component, as returned by {@link #componentOf(int)}.
+     * @return the size of the component.
+     */
+    public int componentSize(int componentId) {
+        return sizes.get(componentId);
+    }
+
+    public int numComponents() {
+        return numComponents;
+    }
+
+    public int numNodes() {
+        return numNodes;
+    }
+}
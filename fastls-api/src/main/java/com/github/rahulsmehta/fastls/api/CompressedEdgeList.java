@@ -0,0 +1,159 @@
+package com.github.rahulsmehta.fastls.api;
+
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A compact, re-iterable in-memory edge sequence that preserves the original stream order.
+ * <p>
+ * Edges are stored in independent blocks of bytes. Within a block, each edge <code>(i,j)</code> is encoded
+ * as two zig-zag varints: <code>i</code> relative to the previous source, and <code>j</code> relative to the
+ * previous target if the source did not change, or to <code>i</code> otherwise. Edge lists grouped by source,
+ * like the bundled graphs, typically shrink to 2-4 bytes per edge, compared to roughly 40 bytes for a boxed
+ * {@link Edge} in a list.
+ */
+class CompressedEdgeList implements Iterable<Edge> {
+
+    private static final int BLOCK_BYTES = 64 * 1024;
+    private static final int MAX_EDGE_BYTES = 10;
+
+    private final List<byte[]> blocks;
+    private final int[] blockSizes;
+    private final long numEdges;
+
+    private CompressedEdgeList(List<byte[]> blocks, int[] blockSizes, long numEdges) {
+        this.blocks = blocks;
+        this.blockSizes = blockSizes;
+        this.numEdges = numEdges;
+    }
+
+    static CompressedEdgeList of(Iterable<Edge> edges) {
+        Builder builder = new Builder();
+        for (Edge edge : edges) {
+            builder.add(edge.i, edge.j);
+        }
+        return builder.build();
+    }
+
+    long getNumEdges() {
+        return numEdges;
+    }
+
+    long sizeInBytes() {
+        long size = 0;
+        for (int blockSize : blockSizes) {
+            size += blockSize;
+        }
+        return size;
+    }
+
+    @Override
+    public Iterator<Edge> iterator() {
+        return new Iterator<Edge>() {
+            private int blockIndex = -1;
+            private byte[] block;
+            private int position = 0;
+            private int limit = 0;
+            private int source = 0;
+            private int target = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (position >= limit) {
+                    if (blockIndex + 1 >= blocks.size()) {
+                        return false;
+                    }
+                    blockIndex++;
+                    block = blocks.get(blockIndex);
+                    limit = blockSizes[blockIndex];
+                    position = 0;
+                    source = 0;
+                    target = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public Edge next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int sourceDelta = readVarint();
+                int targetDelta = readVarint();
+                int base = sourceDelta == 0 ? target : source + sourceDelta;
+                source += sourceDelta;
+                target = base + targetDelta;
+                return new Edge(source, target);
+            }
+
+            private int readVarint() {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = block[position++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                return (value >>> 1) ^ -(value & 1);
+            }
+        };
+    }
+
+    static class Builder {
+        private final List<byte[]> blocks = Lists.newArrayList();
+        private final List<Integer> blockSizes = Lists.newArrayList();
+        private byte[] block = new byte[BLOCK_BYTES];
+        private int position = 0;
+        private int source = 0;
+        private int target = 0;
+        private long numEdges = 0;
+
+        Builder add(int i, int j) {
+            if (position + MAX_EDGE_BYTES > block.length) {
+                finishBlock();
+            }
+            int sourceDelta = i - source;
+            int base = sourceDelta == 0 ? target : i;
+            writeVarint(sourceDelta);
+            writeVarint(j - base);
+            source = i;
+            target = j;
+            numEdges++;
+            return this;
+        }
+
+        private void finishBlock() {
+            blocks.add(block);
+            blockSizes.add(position);
+            block = new byte[BLOCK_BYTES];
+            position = 0;
+            source = 0;
+            target = 0;
+        }
+
+        private void writeVarint(int value) {
+            int zigzag = (value << 1) ^ (value >> 31);
+            while ((zigzag & ~0x7F) != 0) {
+                block[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            block[position++] = (byte) zigzag;
+        }
+
+        CompressedEdgeList build() {
+            if (position > 0) {
+                blocks.add(Arrays.copyOf(block, position));
+                blockSizes.add(position);
+                block = new byte[0];
+                position = 0;
+            }
+            int[] sizes = blockSizes.stream().mapToInt(Integer::intValue).toArray();
+            return new CompressedEdgeList(Lists.newArrayList(blocks), sizes, numEdges);
+        }
+    }
+}
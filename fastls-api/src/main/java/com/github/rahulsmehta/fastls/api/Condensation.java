@@ -0,0 +1,291 @@
+package com.github.rahulsmehta.fastls.api;
+
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The condensation of <code>G</code>: the DAG obtained by contracting every strongly-connected component
+ * into a single vertex. Condensation edges are written out in the same <code>i,j</code> text format read by
+ * {@link EdgeStream}, headed by the number of components, sorted by source and then target component.
+ */
+public class Condensation {
+
+    private static final int RUN_EDGES = 1 << 20;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final File SPILL_DIRECTORY = new File("./build/resources");
+
+    private final int numComponents;
+    private final long numEdges;
+    private final List<Integer> topologicalOrder;
+
+    private Condensation(int numComponents, long numEdges, List<Integer> topologicalOrder) {
+        this.numComponents = numComponents;
+        this.numEdges = numEdges;
+        this.topologicalOrder = topologicalOrder;
+    }
+
+    /**
+     * Makes a single pass over the edges of <code>G</code>, translating each one to its component ids and
+     * writing every distinct inter-component edge to <code>out</code>. The edges of <code>G</code> are never
+     * held in memory: translated edges are packed into a fixed-size buffer that is sorted and deduplicated
+     * whenever it fills, and spilled to disk as a sorted run if it is still more than half full. The runs
+     * are then merged, computing the degree of every component and spilling the targets of the distinct
+     * condensation edges to an adjacency file, from which the topological sort reads them back. Only
+     * O(#components) state is kept on the heap besides the fixed-size buffer.
+     *
+     * @param index the components of <code>G</code>.
+     * @param edges a fresh stream over the edges of <code>G</code>.
+     * @param out   the destination for the condensation edges; it is flushed but not closed.
+     * @return the condensation, including a topological order of its components.
+     */
+    static Condensation write(ComponentIndex index, EdgeStream edges, Writer out) {
+        return write(index, edges, out, RUN_EDGES);
+    }
+
+    static Condensation write(ComponentIndex index, EdgeStream edges, Writer out, int runEdges) {
+        int numComponents = index.numComponents();
+        List<File> runFiles = Lists.newArrayList();
+        List<RunCursor> runs = Lists.newArrayList();
+        try {
+            long[] buffer = new long[runEdges];
+            int size = 0;
+            for (Edge edge : edges) {
+                int u = index.componentOf(edge.i);
+                int v = index.componentOf(edge.j);
+                if (u == v) {
+                    continue;
+                }
+                if (size == buffer.length) {
+                    size = sortUnique(buffer, size);
+                    if (size > buffer.length / 2) {
+                        runs.add(spillRun(buffer, size, runFiles));
+                        size = 0;
+                    }
+                }
+                buffer[size++] = pack(u, v);
+            }
+            runs.add(new RunCursor(buffer, sortUnique(buffer, size)));
+
+            // Merge the sorted runs, writing out each distinct edge and spilling its target for the
+            // topological sort; the merged edges arrive sorted by source, so out-degrees double as offsets
+            File adjacencyFile = File.createTempFile("fastls-condensation", ".adj", SPILL_DIRECTORY);
+            runFiles.add(adjacencyFile);
+            long[] offsets = new long[numComponents + 1];
+            int[] inDegrees = new int[numComponents];
+            long numEdges = 0;
+            long previous = -1;
+            out.write(String.format("%d\n", numComponents));
+            try (DataOutputStream adjacency = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(adjacencyFile), BUFFER_SIZE))) {
+                PriorityQueue<RunCursor> heads = new PriorityQueue<>(Math.max(1, runs.size()),
+                        Comparator.comparingLong(RunCursor::head));
+                for (RunCursor run : runs) {
+                    if (run.advance()) {
+                        heads.add(run);
+                    }
+                }
+                while (!heads.isEmpty()) {
+                    RunCursor run = heads.poll();
+                    long packed = run.head();
+                    if (run.advance()) {
+                        heads.add(run);
+                    }
+                    if (packed == previous) {
+                        continue;
+                    }
+                    previous = packed;
+                    offsets[source(packed) + 1]++;
+                    inDegrees[target(packed)]++;
+                    adjacency.writeInt(target(packed));
+                    numEdges++;
+                    out.write(String.format("%d,%d\n", source(packed), target(packed)));
+                }
+            }
+            out.flush();
+            for (int c = 0; c < numComponents; c++) {
+                offsets[c + 1] += offsets[c];
+            }
+            return new Condensation(numComponents, numEdges,
+                    topologicalOrder(numComponents, offsets, inDegrees, adjacencyFile));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            for (RunCursor run : runs) {
+                run.close();
+            }
+            runFiles.forEach(File::delete);
+        }
+    }
+
+    /**
+     * Sorts the first <code>size</code> values of <code>buffer</code> and removes duplicates in place.
+     *
+     * @return the number of distinct values, now at the front of the buffer.
+     */
+    private static int sortUnique(long[] buffer, int size) {
+        Arrays.sort(buffer, 0, size);
+        int unique = 0;
+        for (int k = 0; k < size; k++) {
+            if (unique == 0 || buffer[k] != buffer[unique - 1]) {
+                buffer[unique++] = buffer[k];
+            }
+        }
+        return unique;
+    }
+
+    private static RunCursor spillRun(long[] buffer, int size, List<File> runFiles) throws IOException {
+        File file = File.createTempFile("fastls-condensation", ".run", SPILL_DIRECTORY);
+        runFiles.add(file);
+        try (DataOutputStream run = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE))) {
+            for (int k = 0; k < size; k++) {
+                run.writeLong(buffer[k]);
+            }
+        }
+        return new RunCursor(new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)),
+                size);
+    }
+
+    /**
+     * Orders the components with Kahn's algorithm, reading the targets of each component's edges from the
+     * adjacency file as the component is dequeued. The order itself doubles as the queue.
+     *
+     * @param offsets   the start of each component's targets in the adjacency file, counted in edges.
+     * @param inDegrees the in-degree of each component; consumed.
+     */
+    private static List<Integer> topologicalOrder(int numComponents, long[] offsets, int[] inDegrees,
+                                                  File adjacencyFile) throws IOException {
+        int[] order = new int[numComponents];
+        int tail = 0;
+        for (int c = 0; c < numComponents; c++) {
+            if (inDegrees[c] == 0) {
+                order[tail++] = c;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel adjacency = new RandomAccessFile(adjacencyFile, "r").getChannel()) {
+            for (int head = 0; head < tail; head++) {
+                int c = order[head];
+                long position = offsets[c] * Integer.BYTES;
+                long end = offsets[c + 1] * Integer.BYTES;
+                while (position < end) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    while (buffer.hasRemaining()) {
+                        if (adjacency.read(buffer, position + buffer.position()) < 0) {
+                            throw new IOException("Unexpected end of condensation adjacency file");
+                        }
+                    }
+                    buffer.flip();
+                    position += buffer.limit();
+                    while (buffer.hasRemaining()) {
+                        int target = buffer.getInt();
+                        if (--inDegrees[target] == 0) {
+                            order[tail++] = target;
+                        }
+                    }
+                }
+            }
+        }
+        if (tail != numComponents) {
+            throw new IllegalStateException("Condensation contains a cycle");
+        }
+        return Collections.unmodifiableList(Ints.asList(order));
+    }
+
+    private static long pack(int u, int v) {
+        return ((long) u << 32) | (v & 0xFFFFFFFFL);
+    }
+
+    private static int source(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    private static int target(long packed) {
+        return (int) packed;
+    }
+
+    public int getNumComponents() {
+        return numComponents;
+    }
+
+    public long getNumEdges() {
+        return numEdges;
+    }
+
+    /**
+     * Returns the components in topological order, i.e. every condensation edge <code>(a,b)</code> has
+     * <code>a</code> listed before <code>b</code>.
+     *
+     * @return an unmodifiable list of component ids, as assigned by {@link ComponentIndex}.
+     */
+    public List<Integer> getTopologicalOrder() {
+        return topologicalOrder;
+    }
+
+    /**
+     * Reads a sorted run of packed edges, either from the in-memory buffer or from a spilled run file.
+     */
+    private static final class RunCursor implements Closeable {
+        private final long[] values;
+        private final DataInputStream in;
+        private int remaining;
+        private int index;
+        private long head;
+
+        RunCursor(long[] values, int size) {
+            this.values = values;
+            this.in = null;
+            this.remaining = size;
+        }
+
+        RunCursor(DataInputStream in, int size) {
+            this.values = null;
+            this.in = in;
+            this.remaining = size;
+        }
+
+        long head() {
+            return head;
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            head = in == null ? values[index++] : in.readLong();
+            return true;
+        }
+
+        @Override
+        public void close() {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package com.github.rahulsmehta.fastls.api;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.stream.Stream;
 
 
@@ -13,6 +17,8 @@ public class EdgeStream implements Iterable<Edge> {
     private final Integer numNodes;
     private final Optional<List<Edge>> maybeEdgeList;
     private final Optional<BufferedReader> maybeReader;
+    private final Optional<Iterable<Edge>> maybeSource;
+    private final OptionalLong maybeEdgeCount;
 
     public EdgeStream(List<Edge> edgeList) {
         this.numNodes = ((int) edgeList.stream()
@@ -21,10 +27,14 @@ public class EdgeStream implements Iterable<Edge> {
                 .count());
         this.maybeEdgeList = Optional.of(edgeList);
         this.maybeReader = Optional.empty();
+        this.maybeSource = Optional.empty();
+        this.maybeEdgeCount = OptionalLong.of(edgeList.size());
     }
 
     public EdgeStream(BufferedReader reader) {
         this.maybeEdgeList = Optional.empty();
+        this.maybeSource = Optional.empty();
+        this.maybeEdgeCount = OptionalLong.empty();
 
         try {
             String top = reader.readLine();
@@ -38,9 +48,88 @@ public class EdgeStream implements Iterable<Edge> {
         }
     }
 
+    EdgeStream(Integer numNodes, Iterable<Edge> source, OptionalLong maybeEdgeCount) {
+        this.numNodes = numNodes;
+        this.maybeEdgeList = Optional.empty();
+        this.maybeReader = Optional.empty();
+        this.maybeSource = Optional.of(source);
+        this.maybeEdgeCount = maybeEdgeCount;
+    }
+
+    /**
+     * Creates a stream over a directory of edge shards, read in file-name order as if they had been
+     * concatenated. Shards are decoded concurrently ahead of the consumer; see {@link ShardedEdgeSource} for
+     * the supported formats.
+     *
+     * @param directory the directory holding the shards.
+     * @param glob      a glob over file names selecting the shards, e.g. <code>part-*</code>.
+     * @param numNodes  the number of nodes in the graph, since shards carry no header.
+     * @return a re-iterable stream over the edges of every shard.
+     */
+    public static EdgeStream fromShards(File directory, String glob, int numNodes) {
+        return fromShards(directory, glob, numNodes, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static EdgeStream fromShards(File directory, String glob, int numNodes, int parallelism) {
+        ShardedEdgeSource source = new ShardedEdgeSource(directory, glob, parallelism);
+        return new EdgeStream(numNodes, source, source.estimatedEdgeCount());
+    }
+
+    /**
+     * Reads a stream once into a compact in-memory form that can be iterated any number of times, so
+     * repeated runs over the same graph skip re-reading and re-parsing their input. See
+     * {@link CompressedEdgeList} for the encoding.
+     *
+     * @param source the stream to compress; it is consumed.
+     * @return a re-iterable stream over the same edges, in the same order.
+     */
+    public static EdgeStream compress(EdgeStream source) {
+        CompressedEdgeList edges = CompressedEdgeList.of(source);
+        return new EdgeStream(source.getNumNodes(), edges, OptionalLong.of(edges.getNumEdges()));
+    }
+
+    /**
+     * Estimates the number of edges in the stream without consuming it.
+     *
+     * @return the exact or estimated edge count, or empty if it cannot be determined cheaply, e.g. for a
+     * stream read from a <code>BufferedReader</code>.
+     */
+    public OptionalLong estimatedEdgeCount() {
+        return maybeEdgeCount;
+    }
+
+    /**
+     * Checks if the stream can be iterated more than once. Streams read from a <code>BufferedReader</code>
+     * are consumed by their first iteration; all others are re-iterable.
+     */
+    public boolean isReplayable() {
+        return !maybeReader.isPresent();
+    }
+
+    /**
+     * Copies the stream to a headerless text file, so that it can be iterated more than once.
+     *
+     * @param file the file to write; the caller is responsible for deleting it.
+     * @return a replayable stream over the same edges, backed by <code>file</code>.
+     */
+    EdgeStream spill(File file) {
+        long numEdges = 0;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file), 64 * 1024)) {
+            for (Edge edge : this) {
+                writer.write(edge.toString() + "\n");
+                numEdges++;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return new EdgeStream(numNodes, ShardedEdgeSource.ofFile(file), OptionalLong.of(numEdges));
+    }
+
     public Iterator<Edge> iterator() {
         if (maybeEdgeList.isPresent()) {
             return this.getEdgeListIterator();
+        } else if (maybeSource.isPresent()) {
+            return maybeSource.get().iterator();
         } else {
             return this.getReaderIterator();
         }
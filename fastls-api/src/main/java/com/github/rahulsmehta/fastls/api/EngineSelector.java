@@ -0,0 +1,88 @@
+package com.github.rahulsmehta.fastls.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+
+/**
+ * Picks an {@link SCCEngine} for each graph: the in-memory engine if its estimated footprint fits within
+ * the memory budget, otherwise the streaming engine. Graphs whose edge count is not known up front, such as
+ * text files read through a <code>BufferedReader</code>, always stream: the in-memory engine has no way to
+ * fall back once it runs out of memory, while the streaming engine needs only O(n) memory whatever the
+ * number of edges.
+ * <p>
+ * A selector is itself an engine, so it can be passed anywhere an engine is expected. Instances are
+ * immutable; <code>with*</code> methods return an updated copy.
+ */
+public class EngineSelector implements SCCEngine {
+
+    private final Logger LOG = LoggerFactory.getLogger(EngineSelector.class);
+
+    private final long memoryBudget;
+    private final SCCEngine inMemoryEngine;
+    private final SCCEngine streamingEngine;
+
+    private EngineSelector(long memoryBudget, SCCEngine inMemoryEngine, SCCEngine streamingEngine) {
+        this.memoryBudget = memoryBudget;
+        this.inMemoryEngine = inMemoryEngine;
+        this.streamingEngine = streamingEngine;
+    }
+
+    /**
+     * Returns a selector choosing between {@link TarjanEngine} and a default {@link LookSelectEngine}, with
+     * a budget of a quarter of the maximum heap size.
+     */
+    public static EngineSelector defaults() {
+        return new EngineSelector(Runtime.getRuntime().maxMemory() / 4, new TarjanEngine(), new LookSelectEngine());
+    }
+
+    public EngineSelector withMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("Memory budget must not be negative");
+        }
+        return new EngineSelector(memoryBudget, inMemoryEngine, streamingEngine);
+    }
+
+    public EngineSelector withInMemoryEngine(SCCEngine inMemoryEngine) {
+        return new EngineSelector(memoryBudget, inMemoryEngine, streamingEngine);
+    }
+
+    public EngineSelector withStreamingEngine(SCCEngine streamingEngine) {
+        return new EngineSelector(memoryBudget, inMemoryEngine, streamingEngine);
+    }
+
+    /**
+     * Chooses the engine to run on a graph, without consuming its edge stream.
+     *
+     * @param graph the graph to choose an engine for.
+     * @return the in-memory engine if the edge count of <code>G</code> is known and it is estimated to fit
+     * within the budget, otherwise the streaming engine.
+     */
+    public SCCEngine select(StreamingGraph graph) {
+        long numNodes = graph.getNodes().size();
+        OptionalLong maybeNumEdges = graph.getEdgeStream().estimatedEdgeCount();
+        if (!maybeNumEdges.isPresent()) {
+            LOG.debug("Selected {} for {} nodes and an unknown number of edges",
+                    streamingEngine.getClass().getSimpleName(), numNodes);
+            return streamingEngine;
+        }
+        long numEdges = maybeNumEdges.getAsLong();
+        long estimate = TarjanEngine.estimateBytes(numNodes, numEdges);
+        SCCEngine engine = estimate <= memoryBudget ? inMemoryEngine : streamingEngine;
+        LOG.debug("Selected {} for {} nodes and ~{} edges", new Object[]{
+                engine.getClass().getSimpleName(), numNodes, numEdges});
+        return engine;
+    }
+
+    @Override
+    public List<Set<Integer>> stronglyConnectedComponents(StreamingGraph graph) {
+        return select(graph).stronglyConnectedComponents(graph);
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+}
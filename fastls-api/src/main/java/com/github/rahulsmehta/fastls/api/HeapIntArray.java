@@ -0,0 +1,29 @@
+package com.github.rahulsmehta.fastls.api;
+
+class HeapIntArray implements IntArray {
+
+    private final int[] values;
+
+    HeapIntArray(int length) {
+        this(new int[length]);
+    }
+
+    HeapIntArray(int[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public int length() {
+        return values.length;
+    }
+
+    @Override
+    public int get(int index) {
+        return values[index];
+    }
+
+    @Override
+    public void set(int index, int value) {
+        values[index] = value;
+    }
+}
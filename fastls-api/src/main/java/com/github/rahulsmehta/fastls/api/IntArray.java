@@ -0,0 +1,15 @@
+package com.github.rahulsmehta.fastls.api;
+
+/**
+ * A fixed-length array of <code>int</code>s holding per-vertex state of the LS tree. Implementations decide
+ * where the values live (see {@link StorageBackend}); all of them support concurrent reads as long as no
+ * thread is writing at the same time.
+ */
+public interface IntArray {
+
+    int length();
+
+    int get(int index);
+
+    void set(int index, int value);
+}
@@ -0,0 +1,118 @@
+package com.github.rahulsmehta.fastls.api;
+
+/**
+ * A union-find structure over the dense elements <code>0..n-1</code>, using union by rank and path
+ * compression, whose parent and rank arrays are allocated from a {@link StorageBackend}.
+ */
+class IntUnionFind {
+
+    private final StorageBackend storage;
+    private IntArray parents;
+    private IntArray ranks;
+    private int size;
+    private int numSets;
+
+    IntUnionFind(StorageBackend storage, int size) {
+        this.storage = storage;
+        this.parents = storage.allocate(Math.max(1, size));
+        this.ranks = storage.allocate(Math.max(1, size));
+        this.size = size;
+        this.numSets = size;
+        for (int i = 0; i < size; i++) {
+            parents.set(i, i);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of disjoint sets, i.e. of distinct representatives.
+     */
+    int numSets() {
+        return numSets;
+    }
+
+    /**
+     * Adds the element <code>size()</code> as a new singleton set, growing the backing arrays if needed.
+     */
+    void addElement() {
+        if (size == parents.length()) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE, 2L * parents.length());
+            parents = copyOf(parents, capacity);
+            ranks = copyOf(ranks, capacity);
+        }
+        parents.set(size, size);
+        ranks.set(size, 0);
+        size++;
+        numSets++;
+    }
+
+    private IntArray copyOf(IntArray array, int capacity) {
+        IntArray copy = storage.allocate(capacity);
+        for (int i = 0; i < array.length(); i++) {
+            copy.set(i, array.get(i));
+        }
+        storage.release(array);
+        return copy;
+    }
+
+    /**
+     * Frees the backing arrays; the structure must not be used afterwards.
+     */
+    void release() {
+        storage.release(parents);
+        storage.release(ranks);
+    }
+
+    /**
+     * Returns the representative of an element's set, compressing the path to it.
+     */
+    int find(int element) {
+        int root = peek(element);
+        int current = element;
+        while (current != root) {
+            int next = parents.get(current);
+            parents.set(current, root);
+            current = next;
+        }
+        return root;
+    }
+
+    /**
+     * Returns the representative of an element's set without modifying the structure, so it is safe to call
+     * concurrently from many threads while nothing else is writing.
+     */
+    int peek(int element) {
+        if (element < 0 || element >= size) {
+            throw new IllegalArgumentException(String.format("Element %d is not contained", element));
+        }
+        int current = element;
+        int parent = parents.get(current);
+        while (parent != current) {
+            current = parent;
+            parent = parents.get(current);
+        }
+        return current;
+    }
+
+    void union(int element1, int element2) {
+        int root1 = find(element1);
+        int root2 = find(element2);
+        if (root1 == root2) {
+            return;
+        }
+        numSets--;
+        int rank1 = ranks.get(root1);
+        int rank2 = ranks.get(root2);
+        if (rank1 > rank2) {
+            parents.set(root2, root1);
+        } else if (rank1 < rank2) {
+            parents.set(root1, root2);
+        } else {
+            parents.set(root2, root1);
+            ranks.set(root1, rank1 + 1);
+        }
+    }
+}
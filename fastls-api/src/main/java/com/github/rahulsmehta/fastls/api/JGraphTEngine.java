@@ -0,0 +1,49 @@
+package com.github.rahulsmehta.fastls.api;
+
+import org.jgrapht.Graph;
+import org.jgrapht.alg.connectivity.GabowStrongConnectivityInspector;
+import org.jgrapht.alg.connectivity.KosarajuStrongConnectivityInspector;
+import org.jgrapht.alg.interfaces.StrongConnectivityAlgorithm;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.builder.GraphTypeBuilder;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Loads <code>G</code> into a JGraphT graph and runs one of its strong connectivity inspectors. Mostly
+ * useful as a reference implementation; {@link TarjanEngine} solves the same in-memory problem with far
+ * less overhead.
+ */
+public class JGraphTEngine implements SCCEngine {
+
+    private final Function<Graph<Integer, DefaultEdge>, StrongConnectivityAlgorithm<Integer, DefaultEdge>> inspector;
+
+    private JGraphTEngine(
+            Function<Graph<Integer, DefaultEdge>, StrongConnectivityAlgorithm<Integer, DefaultEdge>> inspector) {
+        this.inspector = inspector;
+    }
+
+    public static JGraphTEngine kosaraju() {
+        return new JGraphTEngine(KosarajuStrongConnectivityInspector::new);
+    }
+
+    public static JGraphTEngine gabow() {
+        return new JGraphTEngine(GabowStrongConnectivityInspector::new);
+    }
+
+    @Override
+    public List<Set<Integer>> stronglyConnectedComponents(StreamingGraph graph) {
+        Graph<Integer, DefaultEdge> dg = GraphTypeBuilder
+                .<Integer, DefaultEdge>directed().allowingMultipleEdges(false)
+                .allowingSelfLoops(true).edgeClass(DefaultEdge.class).weighted(false).buildGraph();
+        for (Integer node : graph.getNodes()) {
+            dg.addVertex(node);
+        }
+        for (Edge e : graph.getEdgeStream()) {
+            dg.addEdge(e.i, e.j);
+        }
+        return inspector.apply(dg).stronglyConnectedSets();
+    }
+}
@@ -1,40 +1,242 @@
 package com.github.rahulsmehta.fastls.api;
 
 import com.google.common.collect.*;
-import org.jgrapht.alg.util.UnionFind;
 import org.jheaps.annotations.VisibleForTesting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.stream.Collectors;
-
+import java.util.function.Consumer;
+
+/**
+ * The LS tree <code>T</code>, stored as flat per-vertex arrays allocated from a {@link StorageBackend}.
+ * Each live node is identified by its union-find representative; children are kept in doubly-linked
+ * sibling lists so they can be detached and re-attached in constant time. Children of the root are not
+ * linked, since nothing ever enumerates them.
+ */
 public class LSTree {
 
-    private final Logger LOG = LoggerFactory.getLogger(LSTree.class);
-    private final Integer numNodes;
+    private static final int ROOT = -1;
+    private static final int NIL = -2;
 
-    private UnionFind<Integer> uf;
-    private TreeNode root;
-    private Map<Integer, TreeNode> nodeMap;
+    private final Logger LOG = LoggerFactory.getLogger(LSTree.class);
+    private final StorageBackend storage;
+    private Integer numNodes;
+
+    private IntUnionFind uf;
+    private IntArray parent;
+    private IntArray firstChild;
+    private IntArray nextSibling;
+    private IntArray prevSibling;
     private boolean modifiedThisPhase;
+    private int phase;
+
+    // Modification tracking, see trackModifications()
+    private boolean trackingModifications;
+    private IntArray changedPhase;
+    private IntArray pathPhase;
+    private IntArray pathVersion;
+    private int version;
+    private int[] pathScratch;
 
     public LSTree(Set<Integer> nodes) {
+        this(nodes, StorageBackend.heap());
+    }
+
+    public LSTree(Set<Integer> nodes, StorageBackend storage) {
         this.numNodes = nodes.size();
-        this.uf = new UnionFind<>(nodes);
-        this.nodeMap = Maps.newHashMap();
+        for (Integer node : nodes) {
+            if (!containsNode(node)) {
+                throw new IllegalArgumentException("Node ids must be dense, i.e. 0..n-1");
+            }
+        }
+        this.storage = storage;
+        this.uf = new IntUnionFind(storage, this.numNodes);
+
+        int capacity = Math.max(1, this.numNodes);
+        this.parent = storage.allocate(capacity);
+        this.firstChild = storage.allocate(capacity);
+        this.nextSibling = storage.allocate(capacity);
+        this.prevSibling = storage.allocate(capacity);
+        for (int i = 0; i < this.numNodes; i++) {
+            initNode(i);
+        }
+        this.modifiedThisPhase = false;
+        this.phase = 0;
+        this.trackingModifications = false;
+    }
 
-        this.root = new TreeNode(-1, null);
-        this.nodeMap.put(-1, this.root);
+    private void initNode(int node) {
+        this.parent.set(node, ROOT);
+        this.firstChild.set(node, NIL);
+        this.nextSibling.set(node, NIL);
+        this.prevSibling.set(node, NIL);
+        if (this.trackingModifications) {
+            this.changedPhase.set(node, this.phase);
+            this.pathVersion.set(node, -1);
+        }
+    }
 
-        List<TreeNode> children = nodes.stream()
-                .map(value -> new TreeNode(value, this.root))
-                .collect(Collectors.toList());
-        this.root.addChildren(children);
-        for (TreeNode child : children) {
-            this.nodeMap.put(child.getValue(), child);
+    /**
+     * Starts recording the phase in which every node was last attached to a new parent, so that
+     * {@link #isStable(Edge)} can recognize edges whose classification cannot have changed since the
+     * previous phase. Costs three more ints per node.
+     */
+    void trackModifications() {
+        if (this.trackingModifications) {
+            return;
         }
-        this.modifiedThisPhase = false;
+        int capacity = this.parent.length();
+        this.changedPhase = this.storage.allocate(capacity);
+        this.pathPhase = this.storage.allocate(capacity);
+        this.pathVersion = this.storage.allocate(capacity);
+        this.version = 0;
+        this.pathScratch = new int[16];
+        this.trackingModifications = true;
+        for (int node = 0; node < this.numNodes; node++) {
+            this.changedPhase.set(node, this.phase);
+            this.pathVersion.set(node, -1);
+        }
+    }
+
+    /**
+     * Adds a previously unseen node to <code>T</code> as a child of the root, so edges appended after the
+     * initial run may reference vertices that did not exist when the tree was built.
+     *
+     * @param value the value of the new node; it must be the next unused id, i.e. <code>n</code>.
+     * @throws IllegalArgumentException if the node already exists in <code>T</code> or would leave a gap.
+     */
+    void addNode(int value) {
+        if (containsNode(value)) {
+            throw new IllegalArgumentException(String.format("Node %d already exists", value));
+        }
+        if (value != this.numNodes) {
+            throw new IllegalArgumentException(String.format("Node %d would leave a gap in the node ids", value));
+        }
+        if (value == this.parent.length()) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE, 2L * this.parent.length());
+            this.parent = copyOf(this.parent, capacity);
+            this.firstChild = copyOf(this.firstChild, capacity);
+            this.nextSibling = copyOf(this.nextSibling, capacity);
+            this.prevSibling = copyOf(this.prevSibling, capacity);
+            if (this.trackingModifications) {
+                this.changedPhase = copyOf(this.changedPhase, capacity);
+                this.pathPhase = copyOf(this.pathPhase, capacity);
+                this.pathVersion = copyOf(this.pathVersion, capacity);
+            }
+        }
+        this.uf.addElement();
+        initNode(value);
+        this.numNodes++;
+    }
+
+    private IntArray copyOf(IntArray array, int capacity) {
+        IntArray copy = this.storage.allocate(capacity);
+        for (int i = 0; i < array.length(); i++) {
+            copy.set(i, array.get(i));
+        }
+        this.storage.release(array);
+        return copy;
+    }
+
+    /**
+     * Checks whether a vertex of <code>G</code> is known to <code>T</code>, either as a live node or as a
+     * member of a contracted component. Vertex ids are assumed to be dense, i.e. <code>0..n-1</code>.
+     *
+     * @param value the value of the vertex.
+     * @return whether or not the vertex has been added to <code>T</code>.
+     */
+    boolean containsNode(int value) {
+        return value >= 0 && value < this.numNodes;
+    }
+
+    Integer getNumNodes() {
+        return numNodes;
+    }
+
+    /**
+     * Returns the number of live nodes in <code>T</code>, i.e. of nodes not merged into another.
+     */
+    int getNumLiveNodes() {
+        return uf.numSets();
+    }
+
+    /**
+     * Returns the live node of <code>T</code> that a node has been contracted into.
+     */
+    int representative(int node) {
+        return uf.find(node);
+    }
+
+    /**
+     * Renumbers the live nodes of <code>T</code> densely, in order of their current ids, and shrinks every
+     * per-node array to the number of live nodes. Each contracted component becomes a single element of a
+     * fresh union-find structure, so callers must apply the returned mapping to any ids they hold, including
+     * those of edges still to be streamed. Scratch space is allocated from the storage backend, like the
+     * arrays of <code>T</code> themselves.
+     *
+     * @return an array mapping every previous node id to the new id of the live node containing it, allocated
+     * from the storage backend; callers release it once they no longer need it.
+     */
+    IntArray compact() {
+        IntArray mapping = this.storage.allocate(Math.max(1, this.numNodes));
+        int numLive = 0;
+        for (int node = 0; node < this.numNodes; node++) {
+            if (uf.find(node) == node) {
+                mapping.set(node, numLive++);
+            }
+        }
+        int capacity = Math.max(1, numLive);
+        IntArray oldParents = this.storage.allocate(capacity);
+        IntArray oldChangedPhases = this.trackingModifications ? this.storage.allocate(capacity) : null;
+        for (int node = 0; node < this.numNodes; node++) {
+            int rep = uf.find(node);
+            mapping.set(node, mapping.get(rep));
+            if (rep == node) {
+                oldParents.set(mapping.get(node), this.parent.get(node));
+                if (this.trackingModifications) {
+                    oldChangedPhases.set(mapping.get(node), this.changedPhase.get(node));
+                }
+            }
+        }
+
+        this.uf.release();
+        this.storage.release(this.parent);
+        this.storage.release(this.firstChild);
+        this.storage.release(this.nextSibling);
+        this.storage.release(this.prevSibling);
+        if (this.trackingModifications) {
+            this.storage.release(this.changedPhase);
+            this.storage.release(this.pathPhase);
+            this.storage.release(this.pathVersion);
+        }
+        this.uf = new IntUnionFind(this.storage, numLive);
+        this.parent = this.storage.allocate(capacity);
+        this.firstChild = this.storage.allocate(capacity);
+        this.nextSibling = this.storage.allocate(capacity);
+        this.prevSibling = this.storage.allocate(capacity);
+        if (this.trackingModifications) {
+            this.changedPhase = this.storage.allocate(capacity);
+            this.pathPhase = this.storage.allocate(capacity);
+            this.pathVersion = this.storage.allocate(capacity);
+        }
+        for (int node = 0; node < numLive; node++) {
+            initNode(node);
+        }
+        for (int node = 0; node < numLive; node++) {
+            int oldParent = oldParents.get(node);
+            attach(node, oldParent == ROOT ? ROOT : mapping.get(oldParent));
+        }
+        this.storage.release(oldParents);
+        if (this.trackingModifications) {
+            // Renumbering does not change the shape of T, so nodes keep the phase they last changed in
+            for (int node = 0; node < numLive; node++) {
+                this.changedPhase.set(node, oldChangedPhases.get(node));
+            }
+            this.storage.release(oldChangedPhases);
+        }
+        this.numNodes = numLive;
+        return mapping;
     }
 
     /**
@@ -67,6 +269,48 @@ public class LSTree {
         }
     }
 
+    /**
+     * Classifies an edge against the current state of <code>T</code> without modifying it, following the
+     * same rules as {@link #processEdge(Edge)}. Since neither the tree nor the union-find structure is
+     * touched (in particular, no path compression takes place), any number of threads may speculate
+     * concurrently as long as no thread is processing edges at the same time.
+     *
+     * @param graphEdge An edge in <code>G</code> corresponding to <code>(i,j)</code>.
+     * @return the outcome <code>processEdge</code> would have if called now, unless the edge would
+     * modify <code>T</code>, in which case it must be processed sequentially.
+     */
+    Speculation speculate(Edge graphEdge) {
+        Edge treeEdge = new Edge(this.uf.peek(graphEdge.i), this.uf.peek(graphEdge.j));
+
+        if (isInit(treeEdge) && !isSelfLoop(treeEdge)) {
+            return Speculation.MUTATING;
+        } else if (isSelfLoop(treeEdge) || isForward(treeEdge)) {
+            return Speculation.DISCARDED;
+        } else if (isBackward(treeEdge)) {
+            return Speculation.MUTATING;
+        } else if (isCrossForward(treeEdge)) {
+            return new Speculation(false, Optional.of(treeEdge));
+        } else {
+            return Speculation.MUTATING;
+        }
+    }
+
+    /**
+     * The read-only outcome of classifying an edge, see {@link #speculate(Edge)}.
+     */
+    static final class Speculation {
+        static final Speculation MUTATING = new Speculation(true, Optional.empty());
+        static final Speculation DISCARDED = new Speculation(false, Optional.empty());
+
+        final boolean isMutating;
+        final Optional<Edge> maybeEdge;
+
+        private Speculation(boolean isMutating, Optional<Edge> maybeEdge) {
+            this.isMutating = isMutating;
+            this.maybeEdge = maybeEdge;
+        }
+    }
+
     /**
      * Computes the strongly-connected components of <code>G</code>.
      *
@@ -77,23 +321,6 @@ public class LSTree {
         return new ArrayList<>(getKeyedComponents().values());
     }
 
-    /**
-     * Returns the <code>TreeNode</code> associated with a particular node value.
-     *
-     * @param value The value of the node to return.
-     * @return The value of the node, it exists
-     * @throws throws an <code>IllegalStateException</code> if a caller attempts to
-     *                access a non-existent node (since nodes are never explicitly deleted during execution
-     *                this is an indicator of corrupted state).
-     */
-    private TreeNode getNode(int value) {
-        if (this.nodeMap.containsKey(value)) {
-            return this.nodeMap.get(value);
-        } else {
-            throw new IllegalStateException("Tried to access dead node");
-        }
-    }
-
     /**
      * Translates a graph edge <code>(i,j)</code> into a tree edge <code>(u,v)</code> using the union-find
      * structure.
@@ -102,10 +329,25 @@ public class LSTree {
      * @return <code>e' = (u,v),</code> which is an edge that corresponds to the (possibly contracted) nodes
      * in the LS tree.
      */
-    private Edge translateEdge(Edge e) {
+    Edge translateEdge(Edge e) {
         return new Edge(this.uf.find(e.i), this.uf.find(e.j));
     }
 
+    /**
+     * Flattens the union-find structure into an immutable {@link ComponentIndex}.
+     *
+     * @return an index labelling every vertex with its component.
+     */
+    ComponentIndex componentIndex() {
+        IntArray keys = this.storage.allocate(Math.max(1, uf.size()));
+        for (int i = 0; i < uf.size(); i++) {
+            keys.set(i, uf.find(i));
+        }
+        ComponentIndex index = ComponentIndex.fromKeys(keys, uf.size(), this.storage);
+        this.storage.release(keys);
+        return index;
+    }
+
     @VisibleForTesting
     Map<Integer, Set<Integer>> getKeyedComponents() {
         Map<Integer, Set<Integer>> keyedComponents = Maps.newHashMap();
@@ -124,6 +366,69 @@ public class LSTree {
      */
     void startPhase() {
         this.modifiedThisPhase = false;
+        this.phase++;
+    }
+
+    /**
+     * Checks if an edge of the current stream is certain to be classified exactly as it was when the
+     * previous phase emitted it, namely as a cross-forward edge between the same two live nodes, so it can be
+     * passed through to the next stream without processing. Classification only depends on the paths from
+     * both endpoints to the root, so this holds if no node on either path was attached to a new parent since
+     * the previous phase began. Always <code>false</code> unless {@link #trackModifications()} was called.
+     *
+     * @param treeEdge an edge emitted into the current stream by the previous phase.
+     * @return whether or not <code>processEdge</code> would return the edge unchanged without modifying
+     * <code>T</code>.
+     */
+    boolean isStable(Edge treeEdge) {
+        if (!this.trackingModifications) {
+            return false;
+        }
+        int u = treeEdge.i;
+        int v = treeEdge.j;
+        if (u == v || !containsNode(u) || !containsNode(v) || uf.find(u) != u || uf.find(v) != v) {
+            return false;
+        }
+        int previousPhase = this.phase - 1;
+        return lastChangedOnPath(u) < previousPhase && lastChangedOnPath(v) < previousPhase;
+    }
+
+    /**
+     * Returns the latest phase in which any node on the path from <code>node</code> to the root was attached
+     * to a new parent. Results are memoized per node until the next modification of <code>T</code>, so
+     * nodes sharing ancestors only walk the shared part of their paths once.
+     */
+    private int lastChangedOnPath(int node) {
+        int depth = 0;
+        int lastChanged = -1;
+        for (int current = node; current != ROOT; current = this.parent.get(current)) {
+            if (this.pathVersion.get(current) == this.version) {
+                lastChanged = this.pathPhase.get(current);
+                break;
+            }
+            if (depth == this.pathScratch.length) {
+                this.pathScratch = Arrays.copyOf(this.pathScratch, 2 * depth);
+            }
+            this.pathScratch[depth++] = current;
+        }
+        // Fill in the memo from the top of the path down
+        while (depth > 0) {
+            int current = this.pathScratch[--depth];
+            lastChanged = Math.max(lastChanged, this.changedPhase.get(current));
+            this.pathPhase.set(current, lastChanged);
+            this.pathVersion.set(current, this.version);
+        }
+        return lastChanged;
+    }
+
+    private void markChanged(int node) {
+        this.changedPhase.set(node, this.phase);
+        if (++this.version == Integer.MAX_VALUE) {
+            for (int i = 0; i < this.pathVersion.length(); i++) {
+                this.pathVersion.set(i, -1);
+            }
+            this.version = 0;
+        }
     }
 
     /**
@@ -142,15 +447,12 @@ public class LSTree {
      * @param   u   the node to calculate the depth.
      * @return the distance from the root to u; this will always be non-negative.
      */
-    private int depth(TreeNode u) {
-        return depthRecursive(u, 0);
-    }
-
-    private int depthRecursive(TreeNode u, int depth) {
-        if (u.getParent() == null) {
-            return depth;
+    private int depth(int u) {
+        int depth = 0;
+        for (int current = u; current != ROOT; current = this.parent.get(current)) {
+            depth++;
         }
-        return depthRecursive(u.getParent(), depth + 1);
+        return depth;
     }
 
     /**
@@ -161,14 +463,57 @@ public class LSTree {
      * @return a boolean indicating whether or not <code>v</code> is a descendent
      * of <code>u</code>.
      */
-    private boolean isAncestor(TreeNode u, TreeNode v) {
-        if (v == null || v.getParent() == null) {
-            return false;
-        } else if (v.equals(u)) {
-            return true;
+    private boolean isAncestor(int u, int v) {
+        for (int current = v; current != ROOT; current = this.parent.get(current)) {
+            if (current == u) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Makes <code>child</code> a child of <code>newParent</code>, linking it into the parent's sibling list
+     * unless the parent is the root. The child must not currently be linked into any live sibling list.
+     */
+    private void attach(int child, int newParent) {
+        this.parent.set(child, newParent);
+        this.prevSibling.set(child, NIL);
+        if (this.trackingModifications) {
+            markChanged(child);
+        }
+        if (newParent == ROOT) {
+            this.nextSibling.set(child, NIL);
+            return;
+        }
+        int head = this.firstChild.get(newParent);
+        this.nextSibling.set(child, head);
+        if (head != NIL) {
+            this.prevSibling.set(head, child);
+        }
+        this.firstChild.set(newParent, child);
+    }
+
+    /**
+     * Unlinks <code>child</code> from its parent's sibling list, leaving its parent pointer untouched.
+     */
+    private void detach(int child) {
+        int oldParent = this.parent.get(child);
+        if (oldParent == ROOT) {
+            return;
+        }
+        int prev = this.prevSibling.get(child);
+        int next = this.nextSibling.get(child);
+        if (prev != NIL) {
+            this.nextSibling.set(prev, next);
         } else {
-            return isAncestor(u, v.getParent());
+            this.firstChild.set(oldParent, next);
+        }
+        if (next != NIL) {
+            this.prevSibling.set(next, prev);
         }
+        this.prevSibling.set(child, NIL);
+        this.nextSibling.set(child, NIL);
     }
 
     /**
@@ -181,8 +526,7 @@ public class LSTree {
      * the parent of <code>v</code>.
      */
     private boolean isInit(Edge e) {
-        TreeNode v_node = this.getNode(e.j);
-        return v_node.getParent().equals(this.root);
+        return this.parent.get(e.j) == ROOT;
     }
 
     /**
@@ -191,15 +535,9 @@ public class LSTree {
      * @param e the current edge to update.
      */
     private void processInit(Edge e) {
-        TreeNode u_node = this.getNode(e.i);
-        TreeNode v_node = this.getNode(e.j);
-
-        // Remove (r,v) from T
-        this.root.removeChild(v_node);
-
-        // Add (u,v) to T
-        u_node.addChild(v_node);
-        v_node.setParent(u_node);
+        // Remove (r,v) from T and add (u,v) to T
+        detach(e.j);
+        attach(e.j, e.i);
         this.modifiedThisPhase = true;
     }
 
@@ -212,9 +550,7 @@ public class LSTree {
      * of <code>u</code>.
      */
     private boolean isBackward(Edge e) {
-        TreeNode u_node = this.getNode(e.i);
-        TreeNode v_node = this.getNode(e.j);
-        return isAncestor(v_node, u_node);
+        return isAncestor(e.j, e.i);
     }
 
     /**
@@ -223,41 +559,87 @@ public class LSTree {
      * @param e the current edge to update.
      */
     private void processBackward(Edge e) {
-        TreeNode u_node = this.getNode(e.i);
-        TreeNode v_node = this.getNode(e.j);
-
-
-        List<TreeNode> cycle = findCycle(u_node, v_node);
+        List<Integer> cycle = findCycle(e.i, e.j);
         if (cycle.size() < 2) {
             throw new IllegalStateException("Should have at least 2 vertices");
         }
+        Set<Integer> onCycle = Sets.newHashSet(cycle);
 
         // Select a pivot node and contract the cycle around it
-        TreeNode pivot = cycle.get(0);
-        Set<TreeNode> newChildren = Sets.newHashSet();
-        newChildren.addAll(pivot.getChildren());
+        int pivot = cycle.get(0);
+        int pivotParent = this.parent.get(pivot);
+        if (onCycle.contains(pivotParent)) {
+            pivotParent = ROOT;
+        }
+        detach(pivot);
+
+        List<Integer> newChildren = Lists.newArrayList();
+        for (int node : cycle) {
+            for (int child = this.firstChild.get(node); child != NIL; child = this.nextSibling.get(child)) {
+                if (!onCycle.contains(child)) {
+                    newChildren.add(child);
+                }
+            }
+            this.firstChild.set(node, NIL);
+        }
         for (int i = 1; i < cycle.size(); i++) {
-            TreeNode toContract = cycle.get(i);
-            // Remove from nodeMap and store children
-            this.nodeMap.remove(toContract.getValue());
-            newChildren.addAll(toContract.getChildren());
-            // Update the UF structure
-            uf.union(pivot.getValue(), toContract.getValue());
-        }
-        newChildren = Sets.difference(newChildren, ImmutableSet.of(cycle));
-        newChildren.stream().filter(node -> node != pivot).forEach(child -> child.setParent(pivot));
-        pivot.setChildren(newChildren);
-        if (cycle.contains(pivot.getParent())) {
-            this.root.addChild(pivot);
-            pivot.setParent(this.root);
-        }
-        // Re-label the new component
-        int oldValue = pivot.getValue();
-        nodeMap.remove(oldValue);
-
-        int newValue = uf.find(oldValue);
-        pivot.setValue(newValue);
-        nodeMap.put(newValue, pivot);
+            uf.union(pivot, cycle.get(i));
+        }
+
+        // Re-label the new component; its representative takes over the pivot's place in T
+        int newValue = uf.find(pivot);
+        attach(newValue, pivotParent);
+        for (int child : newChildren) {
+            attach(child, newValue);
+        }
+
+        this.modifiedThisPhase = true;
+    }
+
+    /**
+     * Contracts an arbitrary set of live nodes that are known to be strongly connected in <code>G</code>,
+     * e.g. because an in-memory SCC computation found a cycle through them. Unlike
+     * {@link #processBackward(Edge)} the nodes need not lie on a tree path, so the merged node is re-attached
+     * to the root; every tree edge from outside the set into it is displaced into the next stream so that no
+     * reachability is lost.
+     *
+     * @param nodes     the representatives of the nodes to merge; at least two distinct live nodes.
+     * @param displaced receives the tree edges removed from <code>T</code>.
+     */
+    void contract(Collection<Integer> nodes, Consumer<Edge> displaced) {
+        Set<Integer> toMerge = Sets.newHashSet(nodes);
+        if (toMerge.size() < 2) {
+            throw new IllegalArgumentException("Should have at least 2 vertices");
+        }
+
+        for (int node : toMerge) {
+            int nodeParent = this.parent.get(node);
+            if (nodeParent != ROOT && !toMerge.contains(nodeParent)) {
+                displaced.accept(new Edge(nodeParent, node));
+            }
+            detach(node);
+            this.parent.set(node, ROOT);
+        }
+
+        List<Integer> newChildren = Lists.newArrayList();
+        for (int node : toMerge) {
+            for (int child = this.firstChild.get(node); child != NIL; child = this.nextSibling.get(child)) {
+                if (!toMerge.contains(child)) {
+                    newChildren.add(child);
+                }
+            }
+            this.firstChild.set(node, NIL);
+        }
+        int first = toMerge.iterator().next();
+        for (int node : toMerge) {
+            uf.union(first, node);
+        }
+
+        int newValue = uf.find(first);
+        attach(newValue, ROOT);
+        for (int child : newChildren) {
+            attach(child, newValue);
+        }
 
         this.modifiedThisPhase = true;
     }
@@ -267,46 +649,41 @@ public class LSTree {
      *
      * @param u the source vertex for the cycle-forming edge
      * @param v the target vertex for the cytcle-forming edge
-     * @return a list of all <code>TreeNode</code>s that are on the cycle.
+     * @return a list of all nodes that are on the cycle, starting with <code>v</code>.
      */
-    private List<TreeNode> findCycle(TreeNode u, TreeNode v) {
-        return findCycleRecursive(u, v, Lists.newLinkedList(ImmutableList.of(v)));
-    }
-
-    private List<TreeNode> findCycleRecursive(TreeNode u, TreeNode v, LinkedList<TreeNode> currentCycle) {
-        if (u.equals(v)) {
-            return currentCycle;
+    private List<Integer> findCycle(int u, int v) {
+        List<Integer> cycle = Lists.newArrayList(v);
+        for (int current = u; current != v; current = this.parent.get(current)) {
+            cycle.add(current);
         }
-        currentCycle.add(u);
-        return findCycleRecursive(u.getParent(), v, currentCycle);
+        return cycle;
     }
 
     /**
      * Checks if an edge <code>e=(u,v)</code>, given the current state of the tree <code>T</code>,
-     * satisfies the "cross-forward" edge condition, namely that <code>h(u) >= h(v)</code>.
+     * satisfies the "cross-forward" edge condition, namely that <code>h(u) < h(v)</code>. Such an edge points
+     * strictly deeper into <code>T</code>, so it is set aside for the next phase; once <code>T</code> stops
+     * changing, every remaining edge points deeper and none of them can close a cycle.
      *
      * @param e an edge <code>e=(u,v)</code> in the graph <code>G</code>.
      * @return whether or not <code>e</code> is a cross-forward edge.
      */
     private boolean isCrossForward(Edge e) {
-        TreeNode u_node = this.getNode(e.i);
-        TreeNode v_node = this.getNode(e.j);
         return !isForward(e) && !isBackward(e) &&
-                depth(u_node) - 1 <= depth(v_node);
+                depth(e.i) < depth(e.j);
     }
 
     /**
      * Checks if an edge <code>e=(u,v)</code>, given the current state of the tree <code>T</code>,
-     * satisfies the "cross-non-forward" edge condition, namely that <code>h(u) < h(v)</code>.
+     * satisfies the "cross-non-forward" edge condition, namely that <code>h(u) >= h(v)</code>. Moving
+     * <code>v</code> under <code>u</code> then strictly increases its depth, which bounds the number of phases.
      *
      * @param e an edge <code>e=(u,v)</code> in the graph <code>G</code>.
      * @return whether or not <code>e</code> is a cross-non-forward edge.
      */
     private boolean isCrossNonForward(Edge e) {
-        TreeNode u_node = this.getNode(e.i);
-        TreeNode v_node = this.getNode(e.j);
         return !isForward(e) && !isBackward(e) &&
-                depth(u_node) > depth(v_node) - 1;
+                depth(e.i) >= depth(e.j);
     }
 
     /**
@@ -319,20 +696,16 @@ public class LSTree {
      * to the next stream.
      */
     private Optional<Edge> processCrossNonForward(Edge e) {
-        TreeNode u_node = this.getNode(e.i);
-        TreeNode v_node = this.getNode(e.j);
-
         // Remove (v.parent, v) from T
-        TreeNode v_parent = v_node.getParent();
-        v_parent.removeChild(v_node);
+        int vParent = this.parent.get(e.j);
+        detach(e.j);
 
         // Add e=(u,v) to T
-        u_node.addChild(v_node);
-        v_node.setParent(u_node);
+        attach(e.j, e.i);
 
         // Add (v.parent, v) to new stream
         this.modifiedThisPhase = true;
-        return Optional.of(new Edge(v_parent.getValue(), v_node.getValue()));
+        return Optional.of(new Edge(vParent, e.j));
     }
 
 
@@ -345,9 +718,7 @@ public class LSTree {
      * of <code>v</code>.
      */
     private boolean isForward(Edge e) {
-        TreeNode u_node = this.getNode(e.i);
-        TreeNode v_node = this.getNode(e.j);
-        return isAncestor(u_node, v_node);
+        return isAncestor(e.i, e.j);
     }
 
     /**
@@ -363,58 +734,28 @@ public class LSTree {
     /*
     Testing & debugging utilities
      */
-    private void printNodeMap() {
-        nodeMap.entrySet().stream()
-                .filter(entry -> entry.getKey() != -1)
-                .forEach(e -> LOG.warn("{} -p-> {}", e.getKey(), e.getValue().getParent().getValue()));
+    private boolean isLive(int node) {
+        return uf.peek(node) == node;
     }
 
     public List<String> treeEdges() {
-        Set<TreeNode> leafNodes = this.nodeMap.values().stream()
-                .filter(node -> node.getChildren().size() == 0)
-                .collect(Collectors.toSet());
-        Map<Integer, List<String>> leafEdges = Maps.newHashMap();
-        for (TreeNode node : leafNodes) {
-            List<String> nodePath = treeEdges(node, Lists.newLinkedList());
-            leafEdges.put(node.getValue(), nodePath);
-        }
-
-        return leafEdges.values().stream()
-                .flatMap(path -> path.stream())
-                .distinct().collect(Collectors.toList());
-
-    }
-
-    private List<String> treeEdges(TreeNode node, LinkedList<String> path) {
-        if (node.getParent() == null) {
-            return path;
-        } else {
-            path.add(String.format("(%d,%d)", node.getParent().getValue(), node.getValue()));
-            return treeEdges(node.getParent(), path);
+        List<String> edges = Lists.newArrayList();
+        for (int node = 0; node < numNodes; node++) {
+            if (isLive(node)) {
+                edges.add(String.format("(%d,%d)", this.parent.get(node), node));
+            }
         }
+        return edges;
     }
 
     public Integer height() {
-        Collection<TreeNode> nodes = this.nodeMap.values();
-        Integer maxHeight = -1;
-        for (TreeNode n : nodes) {
-            Integer nHeight = depth(n);
-            maxHeight = nHeight > maxHeight ? nHeight : maxHeight;
-        }
-        return maxHeight;
-    }
-
-    private Integer height(TreeNode current, Integer h) {
-        if (current.getChildren().size() == 0) {
-            return h;
-        } else {
-            int maxHeight = -1;
-            for (TreeNode child : current.getChildren()) {
-                int subtreeHeight = height(child, h + 1);
-                maxHeight = subtreeHeight > maxHeight ? subtreeHeight : maxHeight;
+        int maxHeight = 0;
+        for (int node = 0; node < numNodes; node++) {
+            if (isLive(node)) {
+                maxHeight = Math.max(maxHeight, depth(node));
             }
-            return maxHeight;
         }
+        return maxHeight;
     }
 
 }
@@ -0,0 +1,26 @@
+package com.github.rahulsmehta.fastls.api;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs the streaming Look-Select algorithm, which keeps only O(n) state in memory and spills the edges of
+ * <code>G</code> to disk between phases.
+ */
+public class LookSelectEngine implements SCCEngine {
+
+    private final LookSelectOptions options;
+
+    public LookSelectEngine() {
+        this(LookSelectOptions.defaults());
+    }
+
+    public LookSelectEngine(LookSelectOptions options) {
+        this.options = options;
+    }
+
+    @Override
+    public List<Set<Integer>> stronglyConnectedComponents(StreamingGraph graph) {
+        return new LookSelectImpl(graph, options).stronglyConnectedComponents();
+    }
+}
@@ -1,31 +1,79 @@
 package com.github.rahulsmehta.fastls.api;
 
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.jheaps.annotations.VisibleForTesting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public class LookSelectImpl {
 
     private final Logger LOG = LoggerFactory.getLogger(LookSelectImpl.class);
     private final int BUFFER_SIZE = 8 * 1024;
+    private final int BATCH_SIZE = 4 * 1024;
     private final String BASE_NAME = UUID.randomUUID().toString();
     private final String FILE_PATTERN = "./build/resources/fastls.%s.%d";
+    private final String APPEND_FILE_PATTERN = "./build/resources/fastls.%s.%d.append";
+    private final double RENUMBER_RATIO = 0.5;
 
     private StreamingGraph graph;
     private EdgeStream currentStream;
     private LSTree tree;
+    private Optional<SpeculativeClassifier> maybeClassifier;
+    private Optional<WindowContractor> maybeContractor;
+    private int batchSize;
+    private StorageBackend storage;
+    private boolean renumberSuperNodes;
+    private Optional<IntArray> maybeLabels;
+    private Optional<IntArray> maybeMapping;
+    private int numVertices;
+    private boolean trackDirtyRegions;
+    private boolean isStreamClassified;
+    private long stableEdges;
     private int currentPhase;
+    private boolean isConverged;
+    private boolean isAborted;
+    private RunMonitor monitor;
 
 
     public LookSelectImpl(StreamingGraph graph) {
+        this(graph, LookSelectOptions.defaults());
+    }
+
+    public LookSelectImpl(StreamingGraph graph, LookSelectOptions options) {
         this.graph = graph;
         this.currentStream = graph.getEdgeStream();
         this.currentPhase = 0;
+        this.isConverged = false;
+        this.isAborted = false;
+        this.monitor = RunMonitor.unmonitored();
 
-        this.tree = new LSTree(graph.getNodes());
+        this.storage = options.getStorage();
+        this.tree = new LSTree(graph.getNodes(), this.storage);
+        this.renumberSuperNodes = options.isSuperNodeRenumbering();
+        this.maybeLabels = Optional.empty();
+        this.maybeMapping = Optional.empty();
+        this.numVertices = this.tree.getNumNodes();
+        this.trackDirtyRegions = options.isDirtyRegionTracking();
+        this.isStreamClassified = false;
+        this.stableEdges = 0;
+        if (this.trackDirtyRegions) {
+            this.tree.trackModifications();
+        }
+        this.batchSize = options.getContractionWindow() > 0 ? options.getContractionWindow() : BATCH_SIZE;
+        this.maybeClassifier = options.getSpeculationPool()
+                .map(pool -> new SpeculativeClassifier(this.tree, pool, this.batchSize));
+        this.maybeContractor = options.getContractionWindow() > 0
+                ? Optional.of(new WindowContractor(this.tree))
+                : Optional.empty();
     }
 
     private boolean streamingPhase() {
@@ -41,19 +89,48 @@ public class LookSelectImpl {
             fileWriter = new FileWriter(file);
             writer = new BufferedWriter(fileWriter);
 
-            String toWrite = String.format("%d\n", this.graph.getNodes().size());
+            String toWrite = String.format("%d\n", this.tree.getNumNodes());
             writer.write(toWrite);
 
-            for (Edge edge : this.currentStream) {
-                Optional<Edge> maybeEdge = this.tree.processEdge(edge);
-                if (maybeEdge.isPresent()) {
-                    toWrite = maybeEdge.get().toString() + "\n";
-                    writer.write(toWrite);
-                    nextStreamSize++;
+            long edgesProcessed = 0;
+            List<Edge> batch = new ArrayList<>();
+            Iterator<Edge> edges = this.currentStream.iterator();
+            try {
+                while (edges.hasNext()) {
+                    Edge edge = edges.next();
+                    if (this.maybeClassifier.isPresent() || this.maybeContractor.isPresent()) {
+                        batch.add(edge);
+                        if (batch.size() == this.batchSize) {
+                            nextStreamSize += this.processBatch(batch, writer);
+                            batch.clear();
+                        }
+                    } else if (this.isStable(edge)) {
+                        writer.write(edge.toString() + "\n");
+                        nextStreamSize++;
+                    } else {
+                        Optional<Edge> maybeEdge = this.tree.processEdge(edge);
+                        if (maybeEdge.isPresent()) {
+                            toWrite = maybeEdge.get().toString() + "\n";
+                            writer.write(toWrite);
+                            nextStreamSize++;
+                        }
+                    }
+                    if (++edgesProcessed % BATCH_SIZE == 0) {
+                        this.monitor.checkpoint(this.currentPhase, edgesProcessed, nextStreamSize);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    nextStreamSize += this.processBatch(batch, writer);
                 }
+            } finally {
+                // Releases the decoders of a sharded source if the phase was stopped early
+                if (edges instanceof Closeable) {
+                    ((Closeable) edges).close();
+                }
+                writer.close();
+                fileWriter.close();
             }
-            writer.close();
-            fileWriter.close();
+            this.monitor.checkpoint(this.currentPhase, edgesProcessed, nextStreamSize);
 
             BufferedReader nextStream = new BufferedReader(
                     new FileReader(file),
@@ -62,6 +139,10 @@ public class LookSelectImpl {
 
             this.currentStream = new EdgeStream(nextStream);
             this.currentPhase++;
+            // The phase has spilled the renumbered stream, so nothing reads the previous mapping any more
+            this.maybeMapping.ifPresent(this.storage::release);
+            this.maybeMapping = Optional.empty();
+            this.isStreamClassified = true;
 
             return nextStreamSize == 0 || this.tree.isComplete();
         } catch (IOException e) {
@@ -70,20 +151,300 @@ public class LookSelectImpl {
 
     }
 
+    /**
+     * Processes a batch of edges, first collapsing the cycles within it if window contraction is enabled,
+     * then applying it to the LS tree with speculative parallel classification or sequentially.
+     *
+     * @return the number of edges added to the next stream.
+     */
+    private int processBatch(List<Edge> batch, BufferedWriter writer) throws IOException {
+        List<Edge> nextEdges = new ArrayList<>();
+        if (this.maybeContractor.isPresent()) {
+            batch = this.maybeContractor.get().contract(batch, nextEdges::add);
+        }
+        if (this.maybeClassifier.isPresent()) {
+            this.maybeClassifier.get().processBatch(batch, nextEdges::add);
+        } else {
+            for (Edge edge : batch) {
+                if (this.isStable(edge)) {
+                    nextEdges.add(edge);
+                } else {
+                    this.tree.processEdge(edge).ifPresent(nextEdges::add);
+                }
+            }
+        }
+        for (Edge edge : nextEdges) {
+            writer.write(edge.toString() + "\n");
+        }
+        return nextEdges.size();
+    }
+
+    /**
+     * Runs streaming phases until <code>T</code> stops changing. Once converged, the current stream holds
+     * exactly the edges that survived the final phase, which is the state incremental updates resume from.
+     */
+    private void runToCompletion() {
+        if (this.isAborted) {
+            throw new IllegalStateException("Cannot resume a cancelled run");
+        }
+        if (this.isConverged) {
+            return;
+        }
+        boolean isDone;
+        try {
+            do {
+                isDone = this.streamingPhase();
+                if (!isDone && this.renumberSuperNodes) {
+                    this.renumberSuperNodes();
+                }
+            } while (!isDone);
+        } catch (CancellationException e) {
+            // The tree is left mid-phase, so it can never be safely resumed
+            this.isAborted = true;
+            throw e;
+        }
+        this.isConverged = true;
+        LOG.info("Run {} converged after {} phases ({} window contractions, {} stable edges)",
+                new Object[]{BASE_NAME, this.currentPhase, this.getWindowContractions(), this.stableEdges});
+    }
+
+    /**
+     * Compacts the live nodes of <code>T</code> into a dense range once at least half of them have been
+     * contracted away. The surviving stream still refers to the old ids, so it is relabelled on the fly as
+     * the next phase reads it, and that phase spills it with the new ids and releases the mapping.
+     */
+    private void renumberSuperNodes() {
+        int numNodes = this.tree.getNumNodes();
+        int numLive = this.tree.getNumLiveNodes();
+        if (numLive > numNodes * RENUMBER_RATIO) {
+            return;
+        }
+        IntArray mapping = this.tree.compact();
+        this.maybeMapping = Optional.of(mapping);
+        IntArray labels = this.maybeLabels.orElseGet(() -> {
+            IntArray identity = this.storage.allocate(Math.max(1, this.numVertices));
+            for (int v = 0; v < this.numVertices; v++) {
+                identity.set(v, v);
+            }
+            return identity;
+        });
+        for (int v = 0; v < this.numVertices; v++) {
+            labels.set(v, mapping.get(labels.get(v)));
+        }
+        this.maybeLabels = Optional.of(labels);
+
+        EdgeStream previous = this.currentStream;
+        this.currentStream = new EdgeStream(numLive,
+                () -> Iterators.transform(previous.iterator(), e -> new Edge(mapping.get(e.i), mapping.get(e.j))),
+                OptionalLong.empty());
+        LOG.debug("Renumbered {} super-nodes of {} nodes before phase {}",
+                new Object[]{numLive, numNodes, this.currentPhase});
+    }
+
+    /**
+     * Returns the node of <code>T</code> standing for a vertex of <code>G</code>, which differs from the
+     * vertex itself once super-nodes have been renumbered.
+     */
+    private int toTreeNode(int vertex) {
+        return this.maybeLabels.isPresent() ? this.maybeLabels.get().get(vertex) : vertex;
+    }
+
+    /**
+     * Checks if an edge can skip classification because it was emitted by the previous phase and the tree
+     * around both of its endpoints has not changed since. Edges appended by {@link #appendEdges} were never
+     * classified, so nothing is skipped in the phase that first reads them.
+     */
+    private boolean isStable(Edge edge) {
+        if (this.trackDirtyRegions && this.isStreamClassified && this.tree.isStable(edge)) {
+            this.stableEdges++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of streaming phases run so far, including those run by {@link #appendEdges}.
+     */
+    public int getPhaseCount() {
+        return this.currentPhase;
+    }
+
+    /**
+     * Returns the number of strongly-connected components collapsed within contraction windows, or
+     * <code>0</code> if window contraction is disabled.
+     */
+    public long getWindowContractions() {
+        return this.maybeContractor.map(WindowContractor::getContractions).orElse(0L);
+    }
+
+    /**
+     * Returns the number of edges passed through to the next stream without being classified, or
+     * <code>0</code> if dirty-region tracking is disabled.
+     */
+    public long getStableEdges() {
+        return this.stableEdges;
+    }
+
+    /**
+     * Feeds additional edges into a completed run and re-converges the LS tree. Every edge of <code>G</code>
+     * is either implied by the tree and its contractions or still present in the surviving stream, so the
+     * new edges are simply appended to that stream and only the phases needed to absorb them are rerun.
+     * <p>
+     * Edges may reference vertices that were not part of the original graph, as long as vertex ids stay
+     * dense; any missing ids up to the largest one seen are added as singleton nodes.
+     *
+     * @param additionalEdges the edges appended to <code>G</code>.
+     * @return the strongly-connected components of the updated graph.
+     */
+    public List<Set<Integer>> appendEdges(EdgeStream additionalEdges) {
+        this.runToCompletion();
+
+        String APPEND_FILE_NAME = String.format(APPEND_FILE_PATTERN, BASE_NAME, this.currentPhase);
+        try {
+            File file = new File(APPEND_FILE_NAME);
+            FileWriter fileWriter = new FileWriter(file);
+            BufferedWriter writer = new BufferedWriter(fileWriter);
+
+            // The header is informational only; new vertices are registered as their edges are copied
+            writer.write(String.format("%d\n", this.tree.getNumNodes()));
+            for (Edge edge : this.currentStream) {
+                writer.write(edge.toString() + "\n");
+            }
+            for (Edge edge : additionalEdges) {
+                this.ensureNode(edge.i);
+                this.ensureNode(edge.j);
+                writer.write(new Edge(this.toTreeNode(edge.i), this.toTreeNode(edge.j)).toString() + "\n");
+            }
+            writer.close();
+            fileWriter.close();
+
+            this.currentStream = new EdgeStream(new BufferedReader(new FileReader(file), BUFFER_SIZE));
+            this.isConverged = false;
+            this.isStreamClassified = false;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return this.stronglyConnectedComponents();
+    }
+
+    private void ensureNode(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(String.format("Invalid node %d", value));
+        }
+        for (int next = this.numVertices; next <= value; next++) {
+            int node = this.tree.getNumNodes();
+            this.tree.addNode(node);
+            if (this.maybeLabels.isPresent()) {
+                IntArray labels = this.maybeLabels.get();
+                if (next == labels.length()) {
+                    IntArray grown = this.storage.allocate((int) Math.min(Integer.MAX_VALUE, 2L * labels.length()));
+                    for (int v = 0; v < labels.length(); v++) {
+                        grown.set(v, labels.get(v));
+                    }
+                    this.storage.release(labels);
+                    labels = grown;
+                    this.maybeLabels = Optional.of(labels);
+                }
+                labels.set(next, node);
+            }
+            this.numVertices++;
+        }
+    }
+
     @VisibleForTesting
     Map<Integer, Set<Integer>> stronglyConnectedComponentsKeyed() {
-        boolean isDone;
-        do {
-            isDone = this.streamingPhase();
-        } while (!isDone);
-        return this.tree.getKeyedComponents();
+        this.runToCompletion();
+        if (!this.maybeLabels.isPresent()) {
+            return this.tree.getKeyedComponents();
+        }
+        Map<Integer, Set<Integer>> keyedComponents = Maps.newHashMap();
+        for (int v = 0; v < this.numVertices; v++) {
+            keyedComponents.computeIfAbsent(this.tree.representative(this.toTreeNode(v)), c -> Sets.newHashSet())
+                    .add(v);
+        }
+        return keyedComponents;
     }
 
     public List<Set<Integer>> stronglyConnectedComponents() {
-        boolean isDone;
-        do {
-            isDone = this.streamingPhase();
-        } while (!isDone);
-        return this.tree.stronglyConnectedComponents();
+        return new ArrayList<>(this.stronglyConnectedComponentsKeyed().values());
+    }
+
+    public CompletableFuture<List<Set<Integer>>> stronglyConnectedComponentsAsync(Executor executor) {
+        return this.stronglyConnectedComponentsAsync(executor, (phase, edgesProcessed, streamSize) -> {
+        });
+    }
+
+    public CompletableFuture<List<Set<Integer>>> stronglyConnectedComponentsAsync(Executor executor,
+                                                                                   ProgressListener listener) {
+        return this.stronglyConnectedComponentsAsync(executor, listener, Optional.empty());
+    }
+
+    /**
+     * Computes the strongly-connected components of <code>G</code> on the given executor. Cancelling the
+     * returned future stops the run cooperatively at the next batch boundary; if the deadline passes first,
+     * the future completes exceptionally with a <code>TimeoutException</code>. A run that was stopped early
+     * cannot be resumed, and an instance must not be used by more than one run at a time.
+     *
+     * @param executor the executor to run all streaming phases on.
+     * @param listener receives progress updates between batches of edges.
+     * @param timeout  the maximum time the run may take, measured from this call.
+     * @return a future completed with the strongly-connected components of <code>G</code>.
+     */
+    public CompletableFuture<List<Set<Integer>>> stronglyConnectedComponentsAsync(Executor executor,
+                                                                                   ProgressListener listener,
+                                                                                   Optional<Duration> timeout) {
+        CompletableFuture<List<Set<Integer>>> future = new CompletableFuture<>();
+        RunMonitor runMonitor = RunMonitor.forFuture(future, listener, timeout);
+        executor.execute(() -> {
+            this.monitor = runMonitor;
+            try {
+                future.complete(this.stronglyConnectedComponents());
+            } catch (CancellationException e) {
+                LOG.debug("Stopped run {} during phase {}", BASE_NAME, this.currentPhase);
+                // A no-op if the monitor already completed the future; otherwise the listener or the run
+                // itself gave up, and the caller must still be released
+                future.completeExceptionally(e);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                this.monitor = RunMonitor.unmonitored();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Computes the strongly-connected components of <code>G</code> as an immutable index supporting
+     * constant-time membership queries from any number of threads.
+     *
+     * @return a snapshot of the current components; later calls to {@link #appendEdges(EdgeStream)} do not
+     * affect it.
+     */
+    public ComponentIndex componentIndex() {
+        this.runToCompletion();
+        if (!this.maybeLabels.isPresent()) {
+            return this.tree.componentIndex();
+        }
+        IntArray keys = this.storage.allocate(Math.max(1, this.numVertices));
+        for (int v = 0; v < this.numVertices; v++) {
+            keys.set(v, this.tree.representative(this.toTreeNode(v)));
+        }
+        ComponentIndex index = ComponentIndex.fromKeys(keys, this.numVertices, this.storage);
+        this.storage.release(keys);
+        return index;
+    }
+
+    /**
+     * Runs a final streaming pass over the edges of <code>G</code> that writes out the deduplicated edges of
+     * the condensation DAG and computes a topological order of the components. The input stream is consumed
+     * by the first phase, so callers must supply a fresh stream over the same edges.
+     *
+     * @param originalEdges a fresh stream over the edges of <code>G</code>.
+     * @param out           the destination for the condensation edges.
+     * @return the condensation of <code>G</code>, whose component ids match {@link #componentIndex()}.
+     */
+    public Condensation condensation(EdgeStream originalEdges, Writer out) {
+        return Condensation.write(this.componentIndex(), originalEdges, out);
     }
 }
@@ -0,0 +1,128 @@
+package com.github.rahulsmehta.fastls.api;
+
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Immutable tuning options for {@link LookSelectImpl}. Every option defaults to the plain sequential
+ * algorithm; <code>with*</code> methods return an updated copy.
+ */
+public class LookSelectOptions {
+
+    private static final LookSelectOptions DEFAULTS = new LookSelectOptions(
+            Optional.empty(), StorageBackend.heap(), 0, false, false);
+
+    private final Optional<ForkJoinPool> maybeSpeculationPool;
+    private final StorageBackend storage;
+    private final int contractionWindow;
+    private final boolean renumberSuperNodes;
+    private final boolean trackDirtyRegions;
+
+    private LookSelectOptions(Optional<ForkJoinPool> maybeSpeculationPool, StorageBackend storage,
+                              int contractionWindow, boolean renumberSuperNodes, boolean trackDirtyRegions) {
+        this.maybeSpeculationPool = maybeSpeculationPool;
+        this.storage = storage;
+        this.contractionWindow = contractionWindow;
+        this.renumberSuperNodes = renumberSuperNodes;
+        this.trackDirtyRegions = trackDirtyRegions;
+    }
+
+    public static LookSelectOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Classifies batches of edges in parallel on the given pool before applying them to the LS tree.
+     * Results are identical to the sequential algorithm.
+     *
+     * @param pool the pool to run speculative classification on.
+     * @return a copy of these options with speculative classification enabled.
+     */
+    public LookSelectOptions withSpeculativeClassification(ForkJoinPool pool) {
+        return new LookSelectOptions(Optional.of(pool), storage, contractionWindow, renumberSuperNodes,
+                trackDirtyRegions);
+    }
+
+    public LookSelectOptions withoutSpeculativeClassification() {
+        return new LookSelectOptions(Optional.empty(), storage, contractionWindow, renumberSuperNodes,
+                trackDirtyRegions);
+    }
+
+    /**
+     * Allocates the LS tree and union-find arrays from the given backend, e.g. off-heap with
+     * {@link StorageBackend#direct()} or file-backed with {@link StorageBackend#mapped(java.io.File)}.
+     *
+     * @param storage the backend to allocate per-vertex state from.
+     * @return a copy of these options using the given backend.
+     */
+    public LookSelectOptions withStorage(StorageBackend storage) {
+        return new LookSelectOptions(maybeSpeculationPool, storage, contractionWindow, renumberSuperNodes,
+                trackDirtyRegions);
+    }
+
+    /**
+     * Buffers edges into windows of the given size and collapses every cycle found within a window in
+     * memory before the window reaches the LS tree, so fewer streaming phases are needed to converge.
+     * Results are identical to the plain algorithm.
+     *
+     * @param windowSize the number of edges per window, or <code>0</code> to disable window contraction.
+     * @return a copy of these options with the given contraction window.
+     */
+    public LookSelectOptions withContractionWindow(int windowSize) {
+        if (windowSize < 0) {
+            throw new IllegalArgumentException("Window size must not be negative");
+        }
+        return new LookSelectOptions(maybeSpeculationPool, storage, windowSize, renumberSuperNodes, trackDirtyRegions);
+    }
+
+    /**
+     * Renumbers the surviving super-nodes of the LS tree into a dense range at the end of every phase in
+     * which at least half of its nodes were contracted away, so later phases work on smaller arrays.
+     * Components are identical to the plain algorithm.
+     *
+     * @return a copy of these options with super-node renumbering enabled.
+     */
+    public LookSelectOptions withSuperNodeRenumbering() {
+        return new LookSelectOptions(maybeSpeculationPool, storage, contractionWindow, true, trackDirtyRegions);
+    }
+
+    public LookSelectOptions withoutSuperNodeRenumbering() {
+        return new LookSelectOptions(maybeSpeculationPool, storage, contractionWindow, false, trackDirtyRegions);
+    }
+
+    /**
+     * Tracks which parts of the LS tree changed in each phase, so that edges whose endpoints lie in regions
+     * untouched since the previous phase are passed straight through to the next stream instead of being
+     * classified again. Results are identical to the plain algorithm. Has no effect on batches classified
+     * speculatively.
+     *
+     * @return a copy of these options with dirty-region tracking enabled.
+     */
+    public LookSelectOptions withDirtyRegionTracking() {
+        return new LookSelectOptions(maybeSpeculationPool, storage, contractionWindow, renumberSuperNodes, true);
+    }
+
+    public LookSelectOptions withoutDirtyRegionTracking() {
+        return new LookSelectOptions(maybeSpeculationPool, storage, contractionWindow, renumberSuperNodes, false);
+    }
+
+    public Optional<ForkJoinPool> getSpeculationPool() {
+        return maybeSpeculationPool;
+    }
+
+    public StorageBackend getStorage() {
+        return storage;
+    }
+
+    public int getContractionWindow() {
+        return contractionWindow;
+    }
+
+    public boolean isSuperNodeRenumbering() {
+        return renumberSuperNodes;
+    }
+
+    public boolean isDirtyRegionTracking() {
+        return trackDirtyRegions;
+    }
+}
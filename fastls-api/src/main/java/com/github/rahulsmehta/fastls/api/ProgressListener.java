@@ -0,0 +1,19 @@
+package com.github.rahulsmehta.fastls.api;
+
+/**
+ * Receives progress updates from a running Look-Select computation. Updates are delivered on the thread
+ * running the computation, between batches of edges and at the end of every streaming phase, so
+ * implementations should return quickly.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    /**
+     * Called periodically while a streaming phase is running.
+     *
+     * @param phase          the current streaming phase, starting at <code>0</code>.
+     * @param edgesProcessed the number of edges read from the current stream so far in this phase.
+     * @param streamSize     the number of edges written to the next phase's stream so far.
+     */
+    void onProgress(int phase, long edgesProcessed, long streamSize);
+}
@@ -0,0 +1,229 @@
+package com.github.rahulsmehta.fastls.api;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Renumbers the vertices of <code>G</code> before handing it to another engine, so that vertices accessed
+ * close together in the stream get nearby ids and their per-vertex state shares cache lines and pages.
+ * Edges are rewritten to the new ids on the fly as the wrapped engine reads them, and its components are
+ * mapped back to the original ids.
+ * <p>
+ * Computing the permutation takes one or two extra passes over the edge stream; streams that cannot be
+ * replayed are copied to disk first.
+ */
+public class RelabelingEngine implements SCCEngine {
+
+    public enum Ordering {
+        /**
+         * Numbers vertices in the order they first appear in the stream. Takes a single pass.
+         */
+        FIRST_SEEN,
+        /**
+         * Numbers vertices by decreasing total degree, so the most frequently accessed vertices are packed
+         * together. Takes a single pass.
+         */
+        DEGREE,
+        /**
+         * Numbers vertices in breadth-first order over the undirected graph, so neighbourhoods get
+         * contiguous ids. Loads an adjacency array of <code>G</code> into memory.
+         */
+        BFS
+    }
+
+    private final String SPILL_FILE_PATTERN = "./build/resources/fastls.%s.relabel";
+
+    private final SCCEngine engine;
+    private final Ordering ordering;
+
+    /**
+     * @param engine   the engine to run on the relabelled graph.
+     * @param ordering the strategy used to compute the new vertex ids.
+     */
+    public RelabelingEngine(SCCEngine engine, Ordering ordering) {
+        this.engine = engine;
+        this.ordering = ordering;
+    }
+
+    @Override
+    public List<Set<Integer>> stronglyConnectedComponents(StreamingGraph graph) {
+        int numNodes = graph.getNodes().size();
+        EdgeStream edges = graph.getEdgeStream();
+        File spillFile = null;
+        try {
+            if (!edges.isReplayable()) {
+                spillFile = new File(String.format(SPILL_FILE_PATTERN, UUID.randomUUID()));
+                edges = edges.spill(spillFile);
+            }
+
+            int[] oldIds = order(numNodes, edges, ordering);
+            int[] newIds = new int[numNodes];
+            for (int id = 0; id < numNodes; id++) {
+                newIds[oldIds[id]] = id;
+            }
+
+            EdgeStream source = edges;
+            Iterable<Edge> relabelled = () -> new RelabellingIterator(source.iterator(), newIds);
+            StreamingGraph relabelledGraph = new StreamingGraph(
+                    IntStream.range(0, numNodes).boxed().collect(Collectors.toSet()),
+                    new EdgeStream(numNodes, relabelled, edges.estimatedEdgeCount()));
+
+            List<Set<Integer>> components = Lists.newArrayList();
+            for (Set<Integer> component : engine.stronglyConnectedComponents(relabelledGraph)) {
+                Set<Integer> original = Sets.newHashSetWithExpectedSize(component.size());
+                for (int v : component) {
+                    original.add(oldIds[v]);
+                }
+                components.add(original);
+            }
+            return components;
+        } finally {
+            if (spillFile != null) {
+                spillFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Rewrites edges to their new ids as they are read. Closing it closes the underlying iterator, if that is
+     * {@link Closeable}, so the wrapped engine can still stop the decoders of a sharded source early.
+     */
+    private static class RelabellingIterator implements Iterator<Edge>, Closeable {
+        private final Iterator<Edge> edges;
+        private final int[] newIds;
+
+        RelabellingIterator(Iterator<Edge> edges, int[] newIds) {
+            this.edges = edges;
+            this.newIds = newIds;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return edges.hasNext();
+        }
+
+        @Override
+        public Edge next() {
+            Edge edge = edges.next();
+            return new Edge(newIds[edge.i], newIds[edge.j]);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (edges instanceof Closeable) {
+                ((Closeable) edges).close();
+            }
+        }
+    }
+
+    /**
+     * Computes a permutation of the vertices of <code>G</code>.
+     *
+     * @return an array mapping every new id to the original id it replaces.
+     */
+    static int[] order(int numNodes, Iterable<Edge> edges, Ordering ordering) {
+        switch (ordering) {
+            case FIRST_SEEN:
+                return firstSeenOrder(numNodes, edges);
+            case DEGREE:
+                return degreeOrder(numNodes, edges);
+            case BFS:
+                return bfsOrder(numNodes, edges);
+            default:
+                throw new UnsupportedOperationException(String.format("Unsupported ordering %s", ordering));
+        }
+    }
+
+    private static int[] firstSeenOrder(int numNodes, Iterable<Edge> edges) {
+        int[] order = new int[numNodes];
+        boolean[] seen = new boolean[numNodes];
+        int next = 0;
+        for (Edge edge : edges) {
+            if (!seen[edge.i]) {
+                seen[edge.i] = true;
+                order[next++] = edge.i;
+            }
+            if (!seen[edge.j]) {
+                seen[edge.j] = true;
+                order[next++] = edge.j;
+            }
+        }
+        for (int v = 0; v < numNodes; v++) {
+            if (!seen[v]) {
+                order[next++] = v;
+            }
+        }
+        return order;
+    }
+
+    private static int[] degreeOrder(int numNodes, Iterable<Edge> edges) {
+        long[] keyed = new long[numNodes];
+        for (Edge edge : edges) {
+            keyed[edge.i]++;
+            keyed[edge.j]++;
+        }
+        // Sort by decreasing degree, then by id, packing both into one primitive key
+        for (int v = 0; v < numNodes; v++) {
+            keyed[v] = ((Long.MAX_VALUE - (keyed[v] << 31)) & ~0x7FFFFFFFL) | v;
+        }
+        Arrays.sort(keyed);
+        int[] order = new int[numNodes];
+        for (int k = 0; k < numNodes; k++) {
+            order[k] = (int) (keyed[k] & 0x7FFFFFFFL);
+        }
+        return order;
+    }
+
+    private static int[] bfsOrder(int numNodes, Iterable<Edge> edges) {
+        int numEdges = 0;
+        int[] sources = new int[1024];
+        int[] targets = new int[1024];
+        for (Edge edge : edges) {
+            if (numEdges + 2 > sources.length) {
+                sources = Arrays.copyOf(sources, TarjanEngine.grow(sources.length));
+                targets = Arrays.copyOf(targets, sources.length);
+            }
+            sources[numEdges] = edge.i;
+            targets[numEdges++] = edge.j;
+            sources[numEdges] = edge.j;
+            targets[numEdges++] = edge.i;
+        }
+        int[][] csr = TarjanSCC.toCsr(numNodes, sources, targets, numEdges);
+        int[] offsets = csr[0];
+        int[] adjacency = csr[1];
+
+        int[] order = new int[numNodes];
+        boolean[] visited = new boolean[numNodes];
+        int head = 0;
+        int tail = 0;
+        for (int start = 0; start < numNodes; start++) {
+            if (visited[start]) {
+                continue;
+            }
+            visited[start] = true;
+            order[tail++] = start;
+            while (head < tail) {
+                int v = order[head++];
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int w = adjacency[e];
+                    if (!visited[w]) {
+                        visited[w] = true;
+                        order[tail++] = w;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+}
@@ -0,0 +1,411 @@
+package com.github.rahulsmehta.fastls.api;
+
+import com.google.common.collect.Lists;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link StorageBackend} that keeps its arrays in the memory of other processes: every array is split into
+ * contiguous vertex ranges held by {@link RemoteStorageWorker} processes, so the O(n) state of the LS tree
+ * and union-find structure can exceed the memory of one machine. Look-Select itself still runs entirely in
+ * the coordinator, and workers only serve memory.
+ * <p>
+ * The coordinator is the only process that mutates state: it keeps a bounded LRU cache of fixed-size
+ * pages, fetching a page from its owning worker on a miss and writing dirty pages back on eviction. A miss
+ * reads ahead, fetching the following uncached pages of the same worker in the same round trip, so scans
+ * over an array cost one round trip per run of pages rather than per page. Writes are not acknowledged, so
+ * write-backs are pipelined with the next request. Because there is a single writer the cache never needs
+ * invalidation, and the final union-find labels are merged simply by reading them through the same cache.
+ * This mode scales memory rather than CPU, and every cache miss costs a round trip to a worker.
+ * <p>
+ * A request a worker rejects fails with an <code>IllegalStateException</code> carrying the worker's reason.
+ * <p>
+ * Arrays that are grown or replaced are freed on the workers through {@link #release(IntArray)}; the rest
+ * are freed when the storage is closed.
+ */
+public class RemoteStorage implements StorageBackend, Closeable {
+
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_INTS = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_INTS - 1;
+    private static final int DEFAULT_READ_AHEAD_PAGES = 8;
+
+    private final List<WorkerConnection> workers;
+    private final LinkedHashMap<Long, Page> cache;
+    private final int readAheadPages;
+    private int nextArrayId;
+    private int numLiveArrays;
+
+    private RemoteStorage(List<WorkerConnection> workers, int cachePages, int readAheadPages) {
+        this.workers = workers;
+        // Pages read ahead must not push the requested page, or each other, straight out of the cache
+        this.readAheadPages = Math.max(1, Math.min(readAheadPages, cachePages / 2));
+        this.nextArrayId = 0;
+        this.numLiveArrays = 0;
+        this.cache = new LinkedHashMap<Long, Page>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Page> eldest) {
+                if (size() <= cachePages) {
+                    return false;
+                }
+                writeBack(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Connects to running workers.
+     *
+     * @param workerAddresses the addresses of the workers; vertex ranges are assigned in this order.
+     * @param cachePages      the maximum number of pages of <code>1024</code> values cached by the coordinator.
+     * @return a storage backend whose arrays live on the workers.
+     */
+    public static RemoteStorage connect(List<InetSocketAddress> workerAddresses, int cachePages) {
+        return connect(workerAddresses, cachePages, DEFAULT_READ_AHEAD_PAGES);
+    }
+
+    /**
+     * Connects to running workers.
+     *
+     * @param workerAddresses the addresses of the workers; vertex ranges are assigned in this order.
+     * @param cachePages      the maximum number of pages of <code>1024</code> values cached by the coordinator.
+     * @param readAheadPages  the maximum number of pages fetched in a single round trip on a miss, capped at
+     *                        half the cache.
+     * @return a storage backend whose arrays live on the workers.
+     */
+    public static RemoteStorage connect(List<InetSocketAddress> workerAddresses, int cachePages,
+                                             int readAheadPages) {
+        if (workerAddresses.isEmpty()) {
+            throw new IllegalArgumentException("At least one worker is required");
+        }
+        if (cachePages < 1) {
+            throw new IllegalArgumentException("The cache must hold at least one page");
+        }
+        if (readAheadPages < 1) {
+            throw new IllegalArgumentException("At least one page must be read per round trip");
+        }
+        List<WorkerConnection> workers = Lists.newArrayList();
+        try {
+            for (InetSocketAddress address : workerAddresses) {
+                workers.add(new WorkerConnection(address));
+            }
+        } catch (IOException e) {
+            for (WorkerConnection worker : workers) {
+                worker.closeQuietly();
+            }
+            throw new RuntimeException(e);
+        }
+        return new RemoteStorage(workers, cachePages, readAheadPages);
+    }
+
+    @Override
+    public synchronized IntArray allocate(int length) {
+        int arrayId = nextArrayId++;
+        // Keep slices page-aligned so a page is always owned by a single worker
+        long pages = ((long) length + PAGE_INTS - 1) >>> PAGE_SHIFT;
+        int sliceInts = (int) Math.min(Integer.MAX_VALUE,
+                ((pages + workers.size() - 1) / workers.size()) << PAGE_SHIFT);
+        try {
+            for (int w = 0; w < workers.size(); w++) {
+                long sliceStart = (long) w * sliceInts;
+                int sliceLength = (int) Math.max(0, Math.min(sliceInts, length - sliceStart));
+                workers.get(w).allocate(arrayId, sliceLength);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        numLiveArrays++;
+        return new RemoteIntArray(arrayId, length, sliceInts);
+    }
+
+    /**
+     * Frees an array on every worker and drops its cached pages without writing them back. Arrays that were
+     * not allocated from this storage are ignored.
+     */
+    @Override
+    public synchronized void release(IntArray array) {
+        if (!(array instanceof RemoteIntArray) || ((RemoteIntArray) array).owner() != this) {
+            return;
+        }
+        RemoteIntArray remote = (RemoteIntArray) array;
+        if (remote.isReleased) {
+            return;
+        }
+        remote.isReleased = true;
+        cache.values().removeIf(page -> page.arrayId == remote.arrayId);
+        try {
+            for (WorkerConnection worker : workers) {
+                worker.free(remote.arrayId);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        numLiveArrays--;
+    }
+
+    /**
+     * Returns the number of arrays allocated from this storage that have not been released.
+     */
+    synchronized int getNumLiveArrays() {
+        return numLiveArrays;
+    }
+
+    /**
+     * Writes all dirty pages back to their workers.
+     */
+    public synchronized void flush() {
+        for (Page page : cache.values()) {
+            writeBack(page);
+        }
+        try {
+            for (WorkerConnection worker : workers) {
+                worker.flush();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Shuts down every worker and closes the connections; arrays allocated from this storage become unusable.
+     */
+    @Override
+    public synchronized void close() {
+        cache.clear();
+        for (WorkerConnection worker : workers) {
+            try {
+                worker.shutdown();
+            } catch (IOException e) {
+                worker.closeQuietly();
+            }
+        }
+    }
+
+    private synchronized int read(RemoteIntArray array, int index) {
+        return page(array, index).values[index & PAGE_MASK];
+    }
+
+    private synchronized void write(RemoteIntArray array, int index, int value) {
+        Page page = page(array, index);
+        page.values[index & PAGE_MASK] = value;
+        page.isDirty = true;
+    }
+
+    private Page page(RemoteIntArray array, int index) {
+        if (array.isReleased) {
+            throw new IllegalStateException(String.format("Array %d has been released", array.arrayId));
+        }
+        if (index < 0 || index >= array.length) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        int pageIndex = index >>> PAGE_SHIFT;
+        Page page = cache.get(key(array.arrayId, pageIndex));
+        if (page == null) {
+            page = fetch(array, pageIndex);
+        }
+        return page;
+    }
+
+    /**
+     * Fetches a missing page, together with the uncached pages following it in the same worker's slice, in
+     * a single round trip, and caches all of them.
+     *
+     * @return the requested page.
+     */
+    private Page fetch(RemoteIntArray array, int pageIndex) {
+        long pageStart = (long) pageIndex << PAGE_SHIFT;
+        int worker = (int) (pageStart / array.sliceInts);
+        long sliceEnd = Math.min(array.length, (long) (worker + 1) * array.sliceInts);
+        int lastPage = pageIndex;
+        while (lastPage - pageIndex + 1 < readAheadPages
+                && ((long) (lastPage + 1) << PAGE_SHIFT) < sliceEnd
+                && !cache.containsKey(key(array.arrayId, lastPage + 1))) {
+            lastPage++;
+        }
+        int offset = (int) (pageStart - (long) worker * array.sliceInts);
+        int count = (int) (Math.min(sliceEnd, (long) (lastPage + 1) << PAGE_SHIFT) - pageStart);
+        int[] values;
+        try {
+            values = workers.get(worker).read(array.arrayId, offset, count);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        // Cache the pages read ahead first, so the requested page is the most recently used
+        Page requested = null;
+        for (int p = lastPage; p >= pageIndex; p--) {
+            int from = (p - pageIndex) << PAGE_SHIFT;
+            int[] pageValues = Arrays.copyOfRange(values, from, Math.min(count, from + PAGE_INTS));
+            requested = new Page(array.arrayId, worker, offset + from, pageValues);
+            cache.put(key(array.arrayId, p), requested);
+        }
+        return requested;
+    }
+
+    private static long key(int arrayId, int pageIndex) {
+        return ((long) arrayId << 32) | pageIndex;
+    }
+
+    private void writeBack(Page page) {
+        if (!page.isDirty) {
+            return;
+        }
+        try {
+            workers.get(page.worker).write(page.arrayId, page.offset, page.values);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        page.isDirty = false;
+    }
+
+    private static class Page {
+        private final int arrayId;
+        private final int worker;
+        private final int offset;
+        private final int[] values;
+        private boolean isDirty;
+
+        Page(int arrayId, int worker, int offset, int[] values) {
+            this.arrayId = arrayId;
+            this.worker = worker;
+            this.offset = offset;
+            this.values = values;
+            this.isDirty = false;
+        }
+    }
+
+    private class RemoteIntArray implements IntArray {
+        private final int arrayId;
+        private final int length;
+        private final int sliceInts;
+        private boolean isReleased;
+
+        RemoteIntArray(int arrayId, int length, int sliceInts) {
+            this.arrayId = arrayId;
+            this.length = length;
+            this.sliceInts = sliceInts;
+            this.isReleased = false;
+        }
+
+        RemoteStorage owner() {
+            return RemoteStorage.this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public int get(int index) {
+            return read(this, index);
+        }
+
+        @Override
+        public void set(int index, int value) {
+            write(this, index, value);
+        }
+    }
+
+    /**
+     * A request/response connection to a single worker, speaking the protocol served by
+     * {@link RemoteStorageWorker}. Writes are not acknowledged; the worker applies requests in order, so a later
+     * read always observes earlier writes, and a failed write is reported in place of the next response.
+     */
+    private static class WorkerConnection {
+        private final InetSocketAddress address;
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        WorkerConnection(InetSocketAddress address) throws IOException {
+            this.address = address;
+            this.socket = new Socket(address.getAddress(), address.getPort());
+            this.socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream(), RemoteStorageWorker.BUFFER_SIZE));
+            this.out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream(), RemoteStorageWorker.BUFFER_SIZE));
+        }
+
+        void allocate(int arrayId, int length) throws IOException {
+            out.writeByte(RemoteStorageWorker.ALLOCATE);
+            out.writeInt(arrayId);
+            out.writeInt(length);
+            out.flush();
+            checkStatus();
+            if (in.readInt() != length) {
+                throw new IllegalStateException("Worker failed to allocate array");
+            }
+        }
+
+        int[] read(int arrayId, int offset, int count) throws IOException {
+            out.writeByte(RemoteStorageWorker.READ);
+            out.writeInt(arrayId);
+            out.writeInt(offset);
+            out.writeInt(count);
+            out.flush();
+            checkStatus();
+            int[] values = new int[count];
+            for (int k = 0; k < count; k++) {
+                values[k] = in.readInt();
+            }
+            return values;
+        }
+
+        void write(int arrayId, int offset, int[] values) throws IOException {
+            out.writeByte(RemoteStorageWorker.WRITE);
+            out.writeInt(arrayId);
+            out.writeInt(offset);
+            out.writeInt(values.length);
+            for (int value : values) {
+                out.writeInt(value);
+            }
+        }
+
+        void free(int arrayId) throws IOException {
+            out.writeByte(RemoteStorageWorker.FREE);
+            out.writeInt(arrayId);
+            out.flush();
+            checkStatus();
+            if (in.readInt() != arrayId) {
+                throw new IllegalStateException("Worker failed to free array");
+            }
+        }
+
+        void flush() throws IOException {
+            out.flush();
+        }
+
+        private void checkStatus() throws IOException {
+            if (in.readByte() != RemoteStorageWorker.OK) {
+                throw new IllegalStateException(String.format("Worker %s rejected request: %s", address, in.readUTF()));
+            }
+        }
+
+        void shutdown() throws IOException {
+            out.writeByte(RemoteStorageWorker.SHUTDOWN);
+            out.flush();
+            socket.close();
+        }
+
+        void closeQuietly() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing left to clean up
+            }
+        }
+    }
+}
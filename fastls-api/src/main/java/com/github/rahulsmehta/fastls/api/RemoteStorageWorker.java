@@ -0,0 +1,216 @@
+package com.github.rahulsmehta.fastls.api;
+
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+
+/**
+ * A memory server holding slices of the arrays of a {@link RemoteStorage} backend. The worker serves a single
+ * coordinator connection at a time, allocating, reading, writing and freeing slices on request, and exits
+ * its serving loop when the coordinator shuts it down. It runs no part of Look-Select itself.
+ * <p>
+ * Every request is validated before it is applied. A request that cannot be served, such as a read out of
+ * bounds or of an unknown array, is answered with an error reply and the connection stays usable. A write is
+ * not acknowledged, so a bad write, a malformed request or an unknown request type is answered with an error
+ * reply in place of the next expected response and the connection is dropped, since the coordinator can no
+ * longer be kept in step. Dropped connections are logged and the worker keeps accepting new ones.
+ * <p>
+ * Run it as a separate process with <code>RemoteStorageWorker &lt;port&gt;</code>. The worker prints the port
+ * it is listening on as the first line of standard output, so port <code>0</code> picks any free port.
+ */
+public class RemoteStorageWorker {
+
+    static final byte ALLOCATE = 1;
+    static final byte READ = 2;
+    static final byte WRITE = 3;
+    static final byte SHUTDOWN = 4;
+    static final byte FREE = 5;
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Logger LOG = LoggerFactory.getLogger(RemoteStorageWorker.class);
+    private final ServerSocket serverSocket;
+    private final Map<Integer, int[]> slices;
+
+    public RemoteStorageWorker(ServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+        this.slices = Maps.newConcurrentMap();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Serves coordinator connections until one of them sends a shutdown request.
+     */
+    public void serve() {
+        try {
+            boolean isShutdown = false;
+            while (!isShutdown) {
+                Socket socket = serverSocket.accept();
+                try {
+                    socket.setTcpNoDelay(true);
+                    isShutdown = serveConnection(socket);
+                } catch (EOFException e) {
+                    LOG.warn("Coordinator disconnected without shutting down worker on port {}", getPort());
+                } catch (IOException e) {
+                    LOG.warn(String.format("Dropped coordinator connection to worker on port %d", getPort()), e);
+                } finally {
+                    socket.close();
+                }
+                this.slices.clear();
+            }
+            serverSocket.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private boolean serveConnection(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+        while (true) {
+            byte request = in.readByte();
+            try {
+                switch (request) {
+                    case ALLOCATE:
+                        allocate(in, out);
+                        break;
+                    case READ:
+                        read(in, out);
+                        break;
+                    case WRITE:
+                        write(in);
+                        break;
+                    case FREE:
+                        free(in, out);
+                        break;
+                    case SHUTDOWN:
+                        return true;
+                    default:
+                        throw new ProtocolException(String.format("Unknown request %d", request));
+                }
+            } catch (IllegalArgumentException e) {
+                replyError(out, e.getMessage());
+            } catch (ProtocolException e) {
+                replyError(out, e.getMessage());
+                throw e;
+            }
+        }
+    }
+
+    private void allocate(DataInputStream in, DataOutputStream out) throws IOException {
+        int arrayId = in.readInt();
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IllegalArgumentException(String.format("Negative length %d for array %d", length, arrayId));
+        }
+        if (this.slices.containsKey(arrayId)) {
+            throw new IllegalArgumentException(String.format("Array %d is already allocated", arrayId));
+        }
+        try {
+            this.slices.put(arrayId, new int[length]);
+        } catch (OutOfMemoryError e) {
+            throw new IllegalArgumentException(String.format("Out of memory allocating %d ints", length));
+        }
+        out.writeByte(OK);
+        out.writeInt(length);
+        out.flush();
+    }
+
+    private void read(DataInputStream in, DataOutputStream out) throws IOException {
+        int arrayId = in.readInt();
+        int offset = in.readInt();
+        int count = in.readInt();
+        int[] slice = getSlice(arrayId);
+        checkRange(arrayId, slice, offset, count);
+        out.writeByte(OK);
+        for (int k = 0; k < count; k++) {
+            out.writeInt(slice[offset + k]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Applies a write, or fails the connection if it is invalid: writes are not acknowledged, so the
+     * coordinator would otherwise go on as if it had succeeded.
+     */
+    private void write(DataInputStream in) throws IOException {
+        int arrayId = in.readInt();
+        int offset = in.readInt();
+        int count = in.readInt();
+        int[] slice;
+        try {
+            slice = getSlice(arrayId);
+            checkRange(arrayId, slice, offset, count);
+        } catch (IllegalArgumentException e) {
+            throw new ProtocolException(e.getMessage());
+        }
+        for (int k = 0; k < count; k++) {
+            slice[offset + k] = in.readInt();
+        }
+    }
+
+    private void free(DataInputStream in, DataOutputStream out) throws IOException {
+        int arrayId = in.readInt();
+        getSlice(arrayId);
+        this.slices.remove(arrayId);
+        out.writeByte(OK);
+        out.writeInt(arrayId);
+        out.flush();
+    }
+
+    private void replyError(DataOutputStream out, String message) throws IOException {
+        LOG.warn("Rejected request on worker port {}: {}", getPort(), message);
+        out.writeByte(ERROR);
+        out.writeUTF(message);
+        out.flush();
+    }
+
+    /**
+     * Returns the number of arrays this worker currently holds a slice of.
+     */
+    int getNumArrays() {
+        return this.slices.size();
+    }
+
+    private int[] getSlice(int arrayId) {
+        int[] slice = this.slices.get(arrayId);
+        if (slice == null) {
+            throw new IllegalArgumentException(String.format("Unknown array %d", arrayId));
+        }
+        return slice;
+    }
+
+    private static void checkRange(int arrayId, int[] slice, int offset, int count) {
+        if (offset < 0 || count < 0 || (long) offset + count > slice.length) {
+            throw new IllegalArgumentException(String.format("%d values at %d out of bounds for array %d of length %d",
+                    count, offset, arrayId, slice.length));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: RemoteStorageWorker <port>");
+        }
+        ServerSocket serverSocket = new ServerSocket(Integer.parseInt(args[0]));
+        RemoteStorageWorker worker = new RemoteStorageWorker(serverSocket);
+        System.out.println(worker.getPort());
+        System.out.flush();
+        worker.LOG.info("Worker listening on port {}", worker.getPort());
+        worker.serve();
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.rahulsmehta.fastls.api;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tracks cancellation, deadlines and progress reporting for a single Look-Select run. The streaming phase
+ * calls {@link #checkpoint(int, long, long)} between batches of edges; once the run's future has been
+ * completed by someone else (e.g. cancelled) or the deadline has passed, the checkpoint aborts the run by
+ * throwing a <code>CancellationException</code>.
+ */
+class RunMonitor {
+
+    private static final RunMonitor UNMONITORED = new RunMonitor(
+            Optional.empty(), (phase, edgesProcessed, streamSize) -> {
+    }, Optional.empty());
+
+    private final Optional<CompletableFuture<?>> maybeFuture;
+    private final ProgressListener listener;
+    private final Optional<Long> maybeDeadlineNanos;
+
+    private RunMonitor(Optional<CompletableFuture<?>> maybeFuture,
+                       ProgressListener listener,
+                       Optional<Long> maybeDeadlineNanos) {
+        this.maybeFuture = maybeFuture;
+        this.listener = listener;
+        this.maybeDeadlineNanos = maybeDeadlineNanos;
+    }
+
+    static RunMonitor unmonitored() {
+        return UNMONITORED;
+    }
+
+    /**
+     * Creates a monitor for an asynchronous run whose deadline, if any, starts counting now.
+     */
+    static RunMonitor forFuture(CompletableFuture<?> future, ProgressListener listener, Optional<Duration> timeout) {
+        return new RunMonitor(Optional.of(future), listener,
+                timeout.map(t -> System.nanoTime() + t.toNanos()));
+    }
+
+    /**
+     * Reports progress and aborts the run if it has been cancelled or has exceeded its deadline.
+     *
+     * @throws CancellationException if the run should stop.
+     */
+    void checkpoint(int phase, long edgesProcessed, long streamSize) {
+        if (!maybeFuture.isPresent()) {
+            listener.onProgress(phase, edgesProcessed, streamSize);
+            return;
+        }
+        CompletableFuture<?> future = maybeFuture.get();
+        if (future.isDone()) {
+            throw new CancellationException("Run was cancelled");
+        }
+        if (maybeDeadlineNanos.isPresent() && System.nanoTime() - maybeDeadlineNanos.get() > 0) {
+            future.completeExceptionally(new TimeoutException(
+                    String.format("Deadline exceeded during phase %d", phase)));
+            throw new CancellationException("Run exceeded its deadline");
+        }
+        listener.onProgress(phase, edgesProcessed, streamSize);
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.rahulsmehta.fastls.api;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An algorithm for computing the strongly-connected components of a {@link StreamingGraph}. Engines differ
+ * in how much of <code>G</code> they hold in memory; see {@link EngineSelector} for choosing one
+ * automatically.
+ */
+@FunctionalInterface
+public interface SCCEngine {
+
+    /**
+     * Computes the strongly-connected components of a graph, consuming its edge stream.
+     *
+     * @param graph the graph, whose vertex ids must be dense.
+     * @return the strongly-connected components of <code>G</code>, in no particular order.
+     */
+    List<Set<Integer>> stronglyConnectedComponents(StreamingGraph graph);
+}
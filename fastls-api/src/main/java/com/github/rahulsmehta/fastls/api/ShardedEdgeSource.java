@@ -0,0 +1,326 @@
+package com.github.rahulsmehta.fastls.api;
+
+import com.google.common.collect.Lists;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A re-iterable edge source over a set of shard files, yielding the edges of every shard in file-name order.
+ * <p>
+ * Supported shard formats, chosen by file name:
+ * <ul>
+ * <li><code>*.bin</code>: consecutive big-endian <code>int</code> pairs <code>(i,j)</code></li>
+ * <li>anything else: text, one <code>i,j</code> edge per line and no header</li>
+ * <li>either of the above with a trailing <code>.gz</code> is gzip-compressed</li>
+ * </ul>
+ * Each iteration decodes up to <code>parallelism</code> shards concurrently into bounded queues of
+ * primitive blocks, so reading and parsing later shards overlaps with the consumer processing earlier ones
+ * while memory stays bounded. Iterators are {@link Closeable}: closing one that is abandoned before it is
+ * exhausted stops its decoders at once. Decoders of an iterator that is dropped without being closed give up
+ * once it has been garbage collected, and idle decoder threads exit on their own.
+ */
+class ShardedEdgeSource implements Iterable<Edge> {
+
+    private static final int BLOCK_EDGES = 8 * 1024;
+    private static final int QUEUE_BLOCKS = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+    private static final long KEEP_ALIVE_SECONDS = 1;
+    private static final int[] END_OF_SHARD = new int[0];
+
+    private final List<File> shards;
+    private final int parallelism;
+
+    ShardedEdgeSource(File directory, String glob, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        File[] files = directory.listFiles(file -> file.isFile() && matcher.matches(file.toPath().getFileName()));
+        if (files == null) {
+            throw new IllegalArgumentException(String.format("Not a directory: %s", directory));
+        }
+        this.shards = Lists.newArrayList(files);
+        this.shards.sort((f1, f2) -> f1.getName().compareTo(f2.getName()));
+        this.parallelism = parallelism;
+    }
+
+    private ShardedEdgeSource(File file) {
+        this.shards = Lists.newArrayList(file);
+        this.parallelism = 1;
+    }
+
+    /**
+     * Creates a source over exactly one file, whatever characters its name contains.
+     */
+    static ShardedEdgeSource ofFile(File file) {
+        if (!file.isFile()) {
+            throw new IllegalArgumentException(String.format("Not a file: %s", file));
+        }
+        return new ShardedEdgeSource(file);
+    }
+
+    @Override
+    public Iterator<Edge> iterator() {
+        return new ShardIterator();
+    }
+
+    /**
+     * Computes the number of edges from the shard sizes, which is only possible if every shard is an
+     * uncompressed binary file.
+     */
+    OptionalLong estimatedEdgeCount() {
+        long numBytes = 0;
+        for (File shard : shards) {
+            if (!shard.getName().endsWith(".bin")) {
+                return OptionalLong.empty();
+            }
+            numBytes += shard.length();
+        }
+        return OptionalLong.of(numBytes / (2 * Integer.BYTES));
+    }
+
+    /**
+     * Decoded state of one shard: a bounded queue of <code>(i,j)</code> blocks terminated by
+     * {@link #END_OF_SHARD}, plus any failure encountered while decoding. Only weakly refers to the iterator
+     * consuming it, so that the decoder can tell when nobody will ever take another block.
+     */
+    private static class DecodedShard {
+        private final BlockingQueue<int[]> blocks = new ArrayBlockingQueue<>(QUEUE_BLOCKS);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final WeakReference<ShardIterator> consumer;
+
+        DecodedShard(ShardIterator consumer) {
+            this.consumer = new WeakReference<>(consumer);
+        }
+
+        boolean isAbandoned() {
+            ShardIterator iterator = consumer.get();
+            return iterator == null || iterator.isClosed;
+        }
+    }
+
+    private class ShardIterator implements Iterator<Edge>, Closeable {
+        private final ThreadPoolExecutor executor;
+        private final DecodedShard[] decoded;
+        private int nextToSubmit = 0;
+        private int currentShard = 0;
+        private int[] block = END_OF_SHARD;
+        private int offset = 0;
+        private volatile boolean isClosed = false;
+
+        ShardIterator() {
+            int numThreads = Math.max(1, Math.min(parallelism, shards.size()));
+            this.executor = new ThreadPoolExecutor(numThreads, numThreads,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "fastls-shard-reader");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            this.executor.allowCoreThreadTimeOut(true);
+            this.decoded = new DecodedShard[shards.size()];
+            while (nextToSubmit < shards.size() && nextToSubmit < parallelism) {
+                submitNext();
+            }
+            if (nextToSubmit == shards.size()) {
+                executor.shutdown();
+            }
+        }
+
+        private void submitNext() {
+            DecodedShard shard = new DecodedShard(this);
+            File file = shards.get(nextToSubmit);
+            decoded[nextToSubmit] = shard;
+            executor.execute(() -> decode(file, shard));
+            nextToSubmit++;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (isClosed) {
+                throw new IllegalStateException("Iterator has been closed");
+            }
+            while (offset >= block.length) {
+                if (currentShard >= shards.size()) {
+                    return false;
+                }
+                block = takeBlock(decoded[currentShard]);
+                offset = 0;
+                if (block == END_OF_SHARD) {
+                    decoded[currentShard] = null;
+                    currentShard++;
+                    if (nextToSubmit < shards.size()) {
+                        submitNext();
+                        if (nextToSubmit == shards.size()) {
+                            executor.shutdown();
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Edge next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Edge toReturn = new Edge(block[offset], block[offset + 1]);
+            offset += 2;
+            return toReturn;
+        }
+
+        /**
+         * Stops all decoders and releases their buffered blocks. Safe to call at any point, including after
+         * the iterator is exhausted.
+         */
+        @Override
+        public void close() {
+            isClosed = true;
+            executor.shutdownNow();
+            Arrays.fill(decoded, null);
+        }
+
+        private int[] takeBlock(DecodedShard shard) {
+            try {
+                int[] next = shard.blocks.take();
+                if (next == END_OF_SHARD && shard.failure.get() != null) {
+                    executor.shutdownNow();
+                    throw new RuntimeException(
+                            String.format("Failed to read shard %s", shards.get(currentShard)),
+                            shard.failure.get());
+                }
+                return next;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static void decode(File file, DecodedShard shard) {
+        try {
+            try (InputStream in = open(file)) {
+                if (isBinary(file)) {
+                    decodeBinary(in, shard);
+                } else {
+                    decodeText(in, shard);
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Throwable t) {
+                shard.failure.set(t);
+            }
+            put(shard, END_OF_SHARD);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands a block to the consumer, waiting for room in the queue for as long as the consumer is still
+     * around to make some.
+     *
+     * @throws InterruptedException if the decoder was interrupted, or the iterator was closed or dropped.
+     */
+    private static void put(DecodedShard shard, int[] block) throws InterruptedException {
+        while (!shard.blocks.offer(block, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (shard.isAbandoned()) {
+                throw new InterruptedException("Shard iterator was abandoned");
+            }
+        }
+    }
+
+    private static InputStream open(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        if (file.getName().endsWith(".gz")) {
+            return new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+        }
+        return in;
+    }
+
+    private static boolean isBinary(File file) {
+        String name = file.getName();
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - ".gz".length());
+        }
+        return name.endsWith(".bin");
+    }
+
+    private static void decodeBinary(InputStream in, DecodedShard shard) throws IOException, InterruptedException {
+        DataInputStream data = new DataInputStream(in);
+        int[] block = new int[2 * BLOCK_EDGES];
+        int size = 0;
+        while (true) {
+            int i;
+            try {
+                i = data.readInt();
+            } catch (EOFException e) {
+                break;
+            }
+            block[size++] = i;
+            block[size++] = data.readInt();
+            if (size == block.length) {
+                put(shard, block);
+                block = new int[2 * BLOCK_EDGES];
+                size = 0;
+            }
+        }
+        if (size > 0) {
+            put(shard, Arrays.copyOf(block, size));
+        }
+    }
+
+    private static void decodeText(InputStream in, DecodedShard shard) throws IOException, InterruptedException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII), BUFFER_SIZE);
+        int[] block = new int[2 * BLOCK_EDGES];
+        int size = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            int comma = line.indexOf(',');
+            if (comma < 0) {
+                throw new IllegalArgumentException(String.format("Malformed edge: %s", line));
+            }
+            block[size++] = Integer.parseInt(line.substring(0, comma).trim());
+            block[size++] = Integer.parseInt(line.substring(comma + 1).trim());
+            if (size == block.length) {
+                put(shard, block);
+                block = new int[2 * BLOCK_EDGES];
+                size = 0;
+            }
+        }
+        if (size > 0) {
+            put(shard, Arrays.copyOf(block, size));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.rahulsmehta.fastls.api;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Applies batches of edges to an {@link LSTree} by classifying them in parallel first.
+ * <p>
+ * Most edges in a phase are forward edges, self-loops or cross-forward edges, none of which modify the tree.
+ * A window of edges is classified concurrently against the current tree with {@link LSTree#speculate(Edge)};
+ * results are then committed in stream order until the first edge that would modify the tree. That edge is
+ * applied sequentially with {@link LSTree#processEdge(Edge)}, which invalidates every later speculation in the
+ * window, so speculation restarts right after it. Every committed result was therefore computed against
+ * exactly the tree the sequential algorithm would have seen, and the output is identical.
+ * <p>
+ * The window adapts to the mutation rate: it doubles while whole windows commit cleanly, up to the batch size,
+ * and halves when a mutation arrives early, which bounds the work wasted on invalidated speculations.
+ */
+class SpeculativeClassifier {
+
+    private static final int MIN_WINDOW = 16;
+    private static final int SEQUENTIAL_THRESHOLD = 512;
+
+    private final LSTree tree;
+    private final ForkJoinPool pool;
+    private final int maxWindow;
+    private int window;
+
+    /**
+     * @param batchSize the largest batch that will be passed to {@link #processBatch(List, Consumer)}, which
+     *                  also bounds the window.
+     */
+    SpeculativeClassifier(LSTree tree, ForkJoinPool pool, int batchSize) {
+        this.tree = tree;
+        this.pool = pool;
+        this.maxWindow = Math.max(MIN_WINDOW, batchSize);
+        this.window = MIN_WINDOW;
+    }
+
+    /**
+     * Processes a batch of edges, producing the same next-stream edges in the same order as calling
+     * {@link LSTree#processEdge(Edge)} on each of them.
+     *
+     * @param batch the edges to process, in stream order.
+     * @param sink  receives every edge added to the next streaming phase.
+     */
+    void processBatch(List<Edge> batch, Consumer<Edge> sink) {
+        LSTree.Speculation[] speculations = new LSTree.Speculation[Math.min(maxWindow, batch.size())];
+        int start = 0;
+        while (start < batch.size()) {
+            int end = Math.min(batch.size(), start + window);
+            speculate(batch, start, end, speculations);
+
+            int committed = start;
+            while (committed < end && !speculations[committed - start].isMutating) {
+                Optional<Edge> maybeEdge = speculations[committed - start].maybeEdge;
+                if (maybeEdge.isPresent()) {
+                    sink.accept(maybeEdge.get());
+                }
+                committed++;
+            }
+
+            if (committed == end) {
+                window = Math.min(maxWindow, window * 2);
+            } else {
+                if (committed - start < window / 2) {
+                    window = Math.max(MIN_WINDOW, window / 2);
+                }
+                Optional<Edge> maybeEdge = tree.processEdge(batch.get(committed));
+                if (maybeEdge.isPresent()) {
+                    sink.accept(maybeEdge.get());
+                }
+                committed++;
+            }
+            start = committed;
+        }
+    }
+
+    private void speculate(List<Edge> batch, int start, int end, LSTree.Speculation[] speculations) {
+        if (end - start <= SEQUENTIAL_THRESHOLD) {
+            new ClassifyTask(batch, start, end, start, speculations).compute();
+        } else {
+            pool.invoke(new ClassifyTask(batch, start, end, start, speculations));
+        }
+    }
+
+    private class ClassifyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Edge> batch;
+        private final int from;
+        private final int to;
+        private final int offset;
+        private final LSTree.Speculation[] speculations;
+
+        ClassifyTask(List<Edge> batch, int from, int to, int offset, LSTree.Speculation[] speculations) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+            this.offset = offset;
+            this.speculations = speculations;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int k = from; k < to; k++) {
+                    speculations[k - offset] = tree.speculate(batch.get(k));
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ClassifyTask(batch, from, mid, offset, speculations),
+                        new ClassifyTask(batch, mid, to, offset, speculations));
+            }
+        }
+    }
+}
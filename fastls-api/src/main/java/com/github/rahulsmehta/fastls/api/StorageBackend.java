@@ -0,0 +1,53 @@
+package com.github.rahulsmehta.fastls.api;
+
+import java.io.File;
+
+/**
+ * Allocates the arrays backing the LS tree and its union-find structure. The heap backend is the default;
+ * the off-heap backends keep the O(n) state out of the garbage-collected heap, which keeps GC pauses short
+ * for very large graphs and allows a single array to exceed 2^31 bytes.
+ */
+@FunctionalInterface
+public interface StorageBackend {
+
+    /**
+     * Allocates a new zero-filled array.
+     *
+     * @param length the number of <code>int</code>s in the array.
+     * @return the new array.
+     */
+    IntArray allocate(int length);
+
+    /**
+     * Frees an array that will never be accessed again, typically because it was replaced by a larger or
+     * renumbered copy. The local backends leave this to the garbage collector.
+     *
+     * @param array an array previously allocated from this backend.
+     */
+    default void release(IntArray array) {
+    }
+
+    /**
+     * Stores state in ordinary <code>int[]</code>s on the heap.
+     */
+    static StorageBackend heap() {
+        return HeapIntArray::new;
+    }
+
+    /**
+     * Stores state in direct <code>ByteBuffer</code>s outside the heap.
+     */
+    static StorageBackend direct() {
+        return BufferIntArray::allocateDirect;
+    }
+
+    /**
+     * Stores state in memory-mapped temporary files, letting the OS page cache back the arrays when RAM is
+     * tight. The files are unlinked as soon as they are mapped.
+     *
+     * @param directory the directory to create the backing files in.
+     */
+    static StorageBackend mapped(File directory) {
+        return length -> BufferIntArray.allocateMapped(directory, length);
+    }
+}
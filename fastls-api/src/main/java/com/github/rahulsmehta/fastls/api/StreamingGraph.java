@@ -2,8 +2,12 @@ package com.github.rahulsmehta.fastls.api;
 
 import org.jheaps.annotations.VisibleForTesting;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -38,8 +42,32 @@ public class StreamingGraph {
         return new LookSelectImpl(this);
     }
 
+    /**
+     * Computes the strongly-connected components of <code>G</code>, running in memory if the graph is known
+     * to be small enough and streaming with Look-Select otherwise; see {@link EngineSelector#defaults()}.
+     */
     public List<Set<Integer>> stronglyConnectedComponents() {
+        return this.stronglyConnectedComponents(EngineSelector.defaults());
+    }
+
+    public List<Set<Integer>> stronglyConnectedComponents(SCCEngine engine) {
+        return engine.stronglyConnectedComponents(this);
+    }
+
+    public CompletableFuture<List<Set<Integer>>> stronglyConnectedComponentsAsync(Executor executor) {
+        LookSelectImpl lookSelect = new LookSelectImpl(this);
+        return lookSelect.stronglyConnectedComponentsAsync(executor);
+    }
+
+    public CompletableFuture<List<Set<Integer>>> stronglyConnectedComponentsAsync(Executor executor,
+                                                                                   ProgressListener listener,
+                                                                                   Optional<Duration> timeout) {
+        LookSelectImpl lookSelect = new LookSelectImpl(this);
+        return lookSelect.stronglyConnectedComponentsAsync(executor, listener, timeout);
+    }
+
+    public ComponentIndex componentIndex() {
         LookSelectImpl lookSelect = new LookSelectImpl(this);
-        return lookSelect.stronglyConnectedComponents();
+        return lookSelect.componentIndex();
     }
 }
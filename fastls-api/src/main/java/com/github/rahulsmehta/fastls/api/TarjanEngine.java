@@ -0,0 +1,85 @@
+package com.github.rahulsmehta.fastls.api;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads <code>G</code> into memory as a compressed sparse row adjacency array and runs {@link TarjanSCC}
+ * over it in a single pass of the edge stream. Much faster than {@link LookSelectEngine} whenever the
+ * graph fits in memory.
+ */
+public class TarjanEngine implements SCCEngine {
+
+    // Source, target and CSR adjacency entries per edge
+    private static final long BYTES_PER_EDGE = 3 * Integer.BYTES;
+    // CSR offsets, Tarjan's per-vertex state and the boxed component sets returned
+    private static final long BYTES_PER_NODE = 96;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /**
+     * Estimates the memory needed to run this engine over a graph.
+     *
+     * @param numNodes the number of vertices in <code>G</code>.
+     * @param numEdges the (estimated) number of edges in <code>G</code>.
+     * @return the approximate peak number of bytes allocated.
+     */
+    public static long estimateBytes(long numNodes, long numEdges) {
+        return numNodes * BYTES_PER_NODE + numEdges * BYTES_PER_EDGE;
+    }
+
+    @Override
+    public List<Set<Integer>> stronglyConnectedComponents(StreamingGraph graph) {
+        int numNodes = graph.getNodes().size();
+        EdgeStream edgeStream = graph.getEdgeStream();
+        int capacity = (int) Math.min(MAX_CAPACITY, edgeStream.estimatedEdgeCount().orElse(INITIAL_CAPACITY));
+        int[] sources = new int[Math.max(capacity, 1)];
+        int[] targets = new int[sources.length];
+        int numEdges = 0;
+        for (Edge edge : edgeStream) {
+            if (edge.i < 0 || edge.i >= numNodes || edge.j < 0 || edge.j >= numNodes) {
+                throw new IllegalArgumentException(String.format("Edge %s references an unknown node", edge));
+            }
+            if (numEdges == sources.length) {
+                sources = Arrays.copyOf(sources, grow(sources.length));
+                targets = Arrays.copyOf(targets, sources.length);
+            }
+            sources[numEdges] = edge.i;
+            targets[numEdges] = edge.j;
+            numEdges++;
+        }
+
+        int[][] csr = TarjanSCC.toCsr(numNodes, sources, targets, numEdges);
+        return group(TarjanSCC.components(numNodes, csr[0], csr[1]));
+    }
+
+    /**
+     * Doubles the capacity of an edge array, saturating at the largest array the JVM can allocate.
+     *
+     * @throws IllegalStateException if the array is already that large.
+     */
+    static int grow(int capacity) {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Too many edges to load into memory");
+        }
+        return (int) Math.min(MAX_CAPACITY, 2L * capacity);
+    }
+
+    /**
+     * Groups vertices by a dense component labelling, as produced by {@link TarjanSCC#components}.
+     */
+    static List<Set<Integer>> group(int[] labels) {
+        List<Set<Integer>> components = Lists.newArrayList();
+        for (int v = 0; v < labels.length; v++) {
+            while (components.size() <= labels[v]) {
+                components.add(Sets.newHashSet());
+            }
+            components.get(labels[v]).add(v);
+        }
+        return components;
+    }
+}
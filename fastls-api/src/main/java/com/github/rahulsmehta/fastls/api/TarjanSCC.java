@@ -0,0 +1,104 @@
+package com.github.rahulsmehta.fastls.api;
+
+import java.util.Arrays;
+
+/**
+ * An iterative implementation of Tarjan's strongly-connected components algorithm over a graph in
+ * compressed sparse row form, i.e. the out-neighbours of vertex <code>v</code> are
+ * <code>targets[offsets[v]..offsets[v+1]-1]</code>. Uses O(n) primitive arrays and an explicit stack, so it
+ * works on deep graphs without recursion.
+ */
+class TarjanSCC {
+
+    private static final int UNVISITED = -1;
+
+    private TarjanSCC() {
+    }
+
+    /**
+     * Builds the compressed sparse row form of a graph given as parallel source and target arrays.
+     *
+     * @return a pair <code>{offsets, targets}</code>.
+     */
+    static int[][] toCsr(int numNodes, int[] sources, int[] targets, int numEdges) {
+        int[] offsets = new int[numNodes + 1];
+        for (int e = 0; e < numEdges; e++) {
+            offsets[sources[e] + 1]++;
+        }
+        for (int v = 0; v < numNodes; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] next = Arrays.copyOf(offsets, numNodes);
+        int[] adjacency = new int[numEdges];
+        for (int e = 0; e < numEdges; e++) {
+            adjacency[next[sources[e]]++] = targets[e];
+        }
+        return new int[][]{offsets, adjacency};
+    }
+
+    /**
+     * Labels every vertex with its strongly-connected component.
+     *
+     * @param numNodes the number of vertices.
+     * @param offsets  the CSR offsets, of length <code>numNodes + 1</code>.
+     * @param targets  the CSR adjacency array.
+     * @return an array mapping every vertex to a component id in <code>0..k-1</code>.
+     */
+    static int[] components(int numNodes, int[] offsets, int[] targets) {
+        int[] index = new int[numNodes];
+        int[] lowLink = new int[numNodes];
+        int[] component = new int[numNodes];
+        boolean[] onStack = new boolean[numNodes];
+        int[] sccStack = new int[numNodes];
+        int[] callStack = new int[numNodes];
+        int[] edgeCursor = new int[numNodes];
+        Arrays.fill(index, UNVISITED);
+
+        int nextIndex = 0;
+        int nextComponent = 0;
+        int sccTop = 0;
+        for (int start = 0; start < numNodes; start++) {
+            if (index[start] != UNVISITED) {
+                continue;
+            }
+            int callTop = 0;
+            callStack[callTop++] = start;
+            index[start] = lowLink[start] = nextIndex++;
+            edgeCursor[start] = offsets[start];
+            sccStack[sccTop++] = start;
+            onStack[start] = true;
+
+            while (callTop > 0) {
+                int v = callStack[callTop - 1];
+                if (edgeCursor[v] < offsets[v + 1]) {
+                    int w = targets[edgeCursor[v]++];
+                    if (index[w] == UNVISITED) {
+                        index[w] = lowLink[w] = nextIndex++;
+                        edgeCursor[w] = offsets[w];
+                        sccStack[sccTop++] = w;
+                        onStack[w] = true;
+                        callStack[callTop++] = w;
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    }
+                } else {
+                    callTop--;
+                    if (lowLink[v] == index[v]) {
+                        int w;
+                        do {
+                            w = sccStack[--sccTop];
+                            onStack[w] = false;
+                            component[w] = nextComponent;
+                        } while (w != v);
+                        nextComponent++;
+                    }
+                    if (callTop > 0) {
+                        int parent = callStack[callTop - 1];
+                        lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                    }
+                }
+            }
+        }
+        return component;
+    }
+}
@@ -0,0 +1,277 @@
+package com.github.rahulsmehta.fastls.api;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Splits <code>G</code> into its weakly-connected components and solves each one independently, since a
+ * strongly-connected component never spans two of them.
+ * <p>
+ * A first pass over the edge stream unions the endpoints of every edge with a primitive union-find and counts
+ * the out-edges of every vertex. The vertices of each weakly-connected component are then relabelled to a
+ * dense local range, and a second pass buckets every edge into its component: small components are kept in
+ * memory, large ones are spilled to disk in the text format read by {@link EdgeStream}. Finally the
+ * components are solved in parallel, each with an engine of its own choosing, so tiny components run in
+ * memory while only the large ones stream. Spilled components are handed over without an edge count, so an
+ * {@link EngineSelector} always streams them rather than loading them back into memory, possibly several at
+ * once. Isolated vertices are reported as singletons without running any engine.
+ * <p>
+ * Streams that cannot be replayed are copied to disk first.
+ */
+public class WccSplitEngine implements SCCEngine {
+
+    private static final long DEFAULT_SPILL_THRESHOLD = 1024 * 1024;
+
+    private final Logger LOG = LoggerFactory.getLogger(WccSplitEngine.class);
+    private final int BUFFER_SIZE = 64 * 1024;
+    private final String SPILL_DIRECTORY = "./build/resources";
+    private final String INPUT_FILE_PATTERN = "fastls.%s.wcc";
+    private final String COMPONENT_FILE_PATTERN = "fastls.%s.wcc.%d";
+
+    private final SCCEngine componentEngine;
+    private final ForkJoinPool pool;
+    private final long spillThreshold;
+
+    public WccSplitEngine() {
+        this(EngineSelector.defaults(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param componentEngine the engine to solve each weakly-connected component with.
+     * @param pool            the pool to solve components on in parallel.
+     */
+    public WccSplitEngine(SCCEngine componentEngine, ForkJoinPool pool) {
+        this(componentEngine, pool, DEFAULT_SPILL_THRESHOLD);
+    }
+
+    WccSplitEngine(SCCEngine componentEngine, ForkJoinPool pool, long spillThreshold) {
+        this.componentEngine = componentEngine;
+        this.pool = pool;
+        this.spillThreshold = spillThreshold;
+    }
+
+    @Override
+    public List<Set<Integer>> stronglyConnectedComponents(StreamingGraph graph) {
+        String baseName = UUID.randomUUID().toString();
+        int numNodes = graph.getNodes().size();
+        List<File> spillFiles = Lists.newArrayList();
+        try {
+            IntUnionFind uf = new IntUnionFind(StorageBackend.heap(), numNodes);
+            int[] outDegrees = new int[numNodes];
+            EdgeStream edges = this.unionEndpoints(graph.getEdgeStream(), uf, outDegrees, baseName, spillFiles);
+
+            // Number components by representative and relabel their members densely in vertex order
+            int[] componentOf = new int[numNodes];
+            int[] localId = new int[numNodes];
+            int[] rootComponent = new int[numNodes];
+            List<int[]> members = Lists.newArrayList();
+            int[] memberCounts = new int[numNodes];
+            int numComponents = 0;
+            for (int v = 0; v < numNodes; v++) {
+                int root = uf.find(v);
+                if (root == v) {
+                    rootComponent[v] = numComponents++;
+                }
+            }
+            for (int v = 0; v < numNodes; v++) {
+                int component = rootComponent[uf.find(v)];
+                componentOf[v] = component;
+                localId[v] = memberCounts[component]++;
+            }
+            for (int c = 0; c < numComponents; c++) {
+                members.add(new int[memberCounts[c]]);
+            }
+            long[] edgeCounts = new long[numComponents];
+            for (int v = 0; v < numNodes; v++) {
+                members.get(componentOf[v])[localId[v]] = v;
+                edgeCounts[componentOf[v]] += outDegrees[v];
+            }
+            List<EdgeStream> componentStreams = this.bucketEdges(
+                    edges, componentOf, localId, memberCounts, edgeCounts, baseName, spillFiles);
+
+            List<CompletableFuture<List<Set<Integer>>>> solutions = Lists.newArrayList();
+            for (int c = 0; c < numComponents; c++) {
+                int[] global = members.get(c);
+                if (global.length == 1) {
+                    solutions.add(CompletableFuture.completedFuture(
+                            Collections.<Set<Integer>>singletonList(ImmutableSet.of(global[0]))));
+                    continue;
+                }
+                StreamingGraph component = new StreamingGraph(
+                        IntStream.range(0, global.length).boxed().collect(Collectors.toSet()),
+                        componentStreams.get(c));
+                solutions.add(CompletableFuture.supplyAsync(
+                        () -> toGlobal(componentEngine.stronglyConnectedComponents(component), global), pool));
+            }
+
+            List<Set<Integer>> components = Lists.newArrayList();
+            for (CompletableFuture<List<Set<Integer>>> solution : solutions) {
+                components.addAll(solution.join());
+            }
+            LOG.debug("Solved {} weakly-connected components ({} spilled)", numComponents, spillFiles.size());
+            return components;
+        } finally {
+            spillFiles.forEach(File::delete);
+        }
+    }
+
+    /**
+     * Unions the endpoints of every edge and counts the out-edges of every vertex, copying the stream to disk
+     * first if it cannot be replayed.
+     *
+     * @return a replayable stream over the same edges.
+     */
+    private EdgeStream unionEndpoints(EdgeStream edges, IntUnionFind uf, int[] outDegrees, String baseName,
+                                      List<File> spillFiles) {
+        if (!edges.isReplayable()) {
+            File file = new File(SPILL_DIRECTORY, String.format(INPUT_FILE_PATTERN, baseName));
+            spillFiles.add(file);
+            edges = edges.spill(file);
+        }
+        for (Edge edge : edges) {
+            uf.union(edge.i, edge.j);
+            outDegrees[edge.i]++;
+        }
+        return edges;
+    }
+
+    /**
+     * Buckets every edge into its weakly-connected component, translated to local ids. Small components
+     * share flat in-memory arrays, up to a quarter of the maximum heap size in total; components above the
+     * spill threshold, or that no longer fit, are spilled to disk, and their streams carry no edge count.
+     */
+    private List<EdgeStream> bucketEdges(EdgeStream edges, int[] componentOf, int[] localId, int[] memberCounts,
+                                         long[] edgeCounts, String baseName, List<File> spillFiles) {
+        int numComponents = edgeCounts.length;
+        int[] offsets = new int[numComponents + 1];
+        BufferedWriter[] writers = new BufferedWriter[numComponents];
+        File[] files = new File[numComponents];
+        List<EdgeStream> streams = Lists.newArrayList();
+        long maxInMemoryEdges = Math.min(Integer.MAX_VALUE - 8,
+                Runtime.getRuntime().maxMemory() / 4 / (2 * Integer.BYTES));
+        try {
+            for (int c = 0; c < numComponents; c++) {
+                boolean spill = edgeCounts[c] > spillThreshold || offsets[c] + edgeCounts[c] > maxInMemoryEdges;
+                offsets[c + 1] = offsets[c] + (spill ? 0 : (int) edgeCounts[c]);
+                if (spill) {
+                    files[c] = new File(SPILL_DIRECTORY, String.format(COMPONENT_FILE_PATTERN, baseName, c));
+                    spillFiles.add(files[c]);
+                    writers[c] = new BufferedWriter(new FileWriter(files[c]), BUFFER_SIZE);
+                }
+                streams.add(null);
+            }
+
+            int[] sources = new int[offsets[numComponents]];
+            int[] targets = new int[offsets[numComponents]];
+            int[] next = new int[numComponents];
+            System.arraycopy(offsets, 0, next, 0, numComponents);
+            for (Edge edge : edges) {
+                int c = componentOf[edge.i];
+                int i = localId[edge.i];
+                int j = localId[edge.j];
+                if (writers[c] != null) {
+                    writers[c].write(String.format("%d,%d\n", i, j));
+                } else {
+                    sources[next[c]] = i;
+                    targets[next[c]] = j;
+                    next[c]++;
+                }
+            }
+
+            for (int c = 0; c < numComponents; c++) {
+                if (writers[c] != null) {
+                    writers[c].close();
+                    streams.set(c, new EdgeStream(memberCounts[c], ShardedEdgeSource.ofFile(files[c]),
+                            OptionalLong.empty()));
+                } else {
+                    streams.set(c, new EdgeStream(memberCounts[c],
+                            new EdgeSlice(sources, targets, offsets[c], offsets[c + 1]),
+                            OptionalLong.of(edgeCounts[c])));
+                }
+            }
+            return streams;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            for (BufferedWriter writer : writers) {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        LOG.warn("Failed to close spill file", e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<Set<Integer>> toGlobal(List<Set<Integer>> localComponents, int[] global) {
+        List<Set<Integer>> components = Lists.newArrayListWithCapacity(localComponents.size());
+        for (Set<Integer> local : localComponents) {
+            Set<Integer> component = Sets.newHashSetWithExpectedSize(local.size());
+            for (int v : local) {
+                component.add(global[v]);
+            }
+            components.add(component);
+        }
+        return components;
+    }
+
+    /**
+     * A re-iterable view of the edges <code>from..to-1</code> of a pair of parallel arrays.
+     */
+    private static class EdgeSlice implements Iterable<Edge> {
+        private final int[] sources;
+        private final int[] targets;
+        private final int from;
+        private final int to;
+
+        EdgeSlice(int[] sources, int[] targets, int from, int to) {
+            this.sources = sources;
+            this.targets = targets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Iterator<Edge> iterator() {
+            return new Iterator<Edge>() {
+                private int index = from;
+
+                @Override
+                public boolean hasNext() {
+                    return index < to;
+                }
+
+                @Override
+                public Edge next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Edge toReturn = new Edge(sources[index], targets[index]);
+                    index++;
+                    return toReturn;
+                }
+            };
+        }
+    }
+}
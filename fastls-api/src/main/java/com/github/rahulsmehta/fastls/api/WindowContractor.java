@@ -0,0 +1,93 @@
+package com.github.rahulsmehta.fastls.api;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Collapses cycles within a window of buffered edges before they reach the LS tree.
+ * <p>
+ * Each window is translated to the current (possibly contracted) nodes of <code>T</code>, and the
+ * strongly-connected components of that small subgraph are found in memory with {@link TarjanSCC}. Every
+ * non-trivial component is a set of nodes that are strongly connected in <code>G</code>, so it is merged
+ * directly with {@link LSTree#contract}, instead of waiting for Look-Select to discover the cycle over
+ * several streaming phases. The window is then reduced to its distinct, non-self-loop tree edges, which
+ * carry the same reachability as the original edges.
+ */
+class WindowContractor {
+
+    private final LSTree tree;
+    private long contractions;
+
+    WindowContractor(LSTree tree) {
+        this.tree = tree;
+        this.contractions = 0;
+    }
+
+    long getContractions() {
+        return contractions;
+    }
+
+    /**
+     * Contracts the cycles within a window of edges.
+     *
+     * @param window    the buffered edges of <code>G</code>.
+     * @param displaced receives tree edges displaced by contractions, which belong to the next stream.
+     * @return the reduced window, to be processed by the LS tree as usual.
+     */
+    List<Edge> contract(List<Edge> window, Consumer<Edge> displaced) {
+        Map<Integer, Integer> localIds = Maps.newHashMap();
+        List<Integer> treeNodes = Lists.newArrayList();
+        int[] sources = new int[window.size()];
+        int[] targets = new int[window.size()];
+        int numEdges = 0;
+        for (Edge edge : window) {
+            Edge treeEdge = tree.translateEdge(edge);
+            if (treeEdge.i.equals(treeEdge.j)) {
+                continue;
+            }
+            sources[numEdges] = localId(treeEdge.i, localIds, treeNodes);
+            targets[numEdges] = localId(treeEdge.j, localIds, treeNodes);
+            numEdges++;
+        }
+
+        int[][] csr = TarjanSCC.toCsr(treeNodes.size(), sources, targets, numEdges);
+        int[] components = TarjanSCC.components(treeNodes.size(), csr[0], csr[1]);
+        Map<Integer, List<Integer>> members = Maps.newHashMap();
+        for (int local = 0; local < components.length; local++) {
+            members.computeIfAbsent(components[local], c -> Lists.newArrayList()).add(treeNodes.get(local));
+        }
+        for (List<Integer> component : members.values()) {
+            if (component.size() > 1) {
+                tree.contract(component, displaced);
+                contractions++;
+            }
+        }
+
+        List<Edge> reduced = Lists.newArrayList();
+        Set<Long> seen = Sets.newHashSet();
+        for (int e = 0; e < numEdges; e++) {
+            Edge treeEdge = tree.translateEdge(new Edge(treeNodes.get(sources[e]), treeNodes.get(targets[e])));
+            long key = ((long) treeEdge.i << 32) | (treeEdge.j & 0xFFFFFFFFL);
+            if (!treeEdge.i.equals(treeEdge.j) && seen.add(key)) {
+                reduced.add(treeEdge);
+            }
+        }
+        return reduced;
+    }
+
+    private static int localId(int node, Map<Integer, Integer> localIds, List<Integer> treeNodes) {
+        Integer local = localIds.get(node);
+        if (local == null) {
+            local = treeNodes.size();
+            localIds.put(node, local);
+            treeNodes.add(node);
+        }
+        return local;
+    }
+}
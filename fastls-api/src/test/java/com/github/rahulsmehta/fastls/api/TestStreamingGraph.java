@@ -4,6 +4,7 @@ import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
 import com.carrotsearch.junitbenchmarks.BenchmarkRule;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.sun.org.apache.bcel.internal.generic.LADD;
 import org.jgrapht.Graph;
@@ -21,17 +22,37 @@ import org.junit.rules.TestRule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class TestStreamingGraph {
 
@@ -149,6 +170,763 @@ public class TestStreamingGraph {
         assertTrue(checkComponentLists(jgraphtComponents, lsComponents));
     }
 
+    @Test
+    public void testAppendEdgesMatchesFullRun() {
+        assertAppendMatches(LookSelectOptions.defaults());
+    }
+
+    /**
+     * Runs Look-Select on the first half of the edges of {@link #MED_GRAPH_FILE}, appends the rest followed
+     * by <code>extraEdges</code>, and checks the result against Tarjan on all of them.
+     *
+     * @return the run, after the append.
+     */
+    private LookSelectImpl assertAppendMatches(LookSelectOptions options, Edge... extraEdges) {
+        List<Edge> edges = loadEdgeList(MED_GRAPH_FILE);
+        int numNodes = loadGraph(MED_GRAPH_FILE).getEdgeStream().getNumNodes();
+        int split = edges.size() / 2;
+        LookSelectImpl impl = new LookSelectImpl(new StreamingGraph(
+                IntStream.range(0, numNodes).boxed().collect(Collectors.toSet()),
+                new EdgeStream(edges.subList(0, split))), options);
+        impl.stronglyConnectedComponents();
+
+        List<Edge> appended = Lists.newArrayList(edges.subList(split, edges.size()));
+        appended.addAll(Arrays.asList(extraEdges));
+        int numAllNodes = Math.max(numNodes,
+                appended.stream().mapToInt(e -> Math.max(e.i, e.j) + 1).max().orElse(0));
+        List<Set<Integer>> expected = new StreamingGraph(
+                IntStream.range(0, numAllNodes).boxed().collect(Collectors.toSet()),
+                new EdgeStream(Lists.newArrayList(Iterables.concat(edges.subList(0, split), appended))))
+                .stronglyConnectedComponents(new TarjanEngine());
+        assertTrue(checkComponentLists(expected, impl.appendEdges(new EdgeStream(appended))));
+        return impl;
+    }
+
+    @Test
+    public void testAppendEdgesWithNewNodes() {
+        Set<Integer> nodes = ImmutableSet.of(0, 1, 2);
+        LookSelectImpl impl = new StreamingGraph(nodes, new EdgeStream(ImmutableList.of(
+                new Edge(0, 1), new Edge(1, 2)))).getImpl();
+        assertEquals(3, impl.stronglyConnectedComponents().size());
+
+        List<Set<Integer>> components = impl.appendEdges(new EdgeStream(ImmutableList.of(
+                new Edge(2, 4), new Edge(4, 0))));
+        assertTrue(checkComponentLists(
+                ImmutableList.of(ImmutableSet.of(0, 1, 2, 4), ImmutableSet.of(3)),
+                components));
+    }
+
+    @Test
+    public void testComponentIndex() throws IOException {
+        List<Set<Integer>> jgraphtComponents = computeSCCJGraphT(MED_GRAPH_FILE);
+        ComponentIndex index = loadGraph(MED_GRAPH_FILE).componentIndex();
+        checkComponentIndex(jgraphtComponents, index);
+
+        File indexFile = File.createTempFile("fastls-index", ".bin");
+        indexFile.deleteOnExit();
+        index.writeTo(indexFile);
+        checkComponentIndex(jgraphtComponents, ComponentIndex.load(indexFile));
+        // Tiny segments make lookups cross many separately mapped regions of the file
+        checkComponentIndex(jgraphtComponents, ComponentIndex.load(indexFile, 3));
+    }
+
+    private static void checkComponentIndex(List<Set<Integer>> components, ComponentIndex index) {
+        assertEquals(components.size(), index.numComponents());
+        assertEquals(components.stream().mapToInt(Set::size).sum(), index.numNodes());
+        Set<Integer> labels = new HashSet<>();
+        for (Set<Integer> component : components) {
+            int first = component.iterator().next();
+            int componentId = index.componentOf(first);
+            assertTrue(componentId >= 0 && componentId < index.numComponents());
+            // Every component must get a label of its own
+            assertTrue(labels.add(componentId));
+            assertEquals(component.size(), index.componentSize(componentId));
+            for (Integer node : component) {
+                assertEquals(componentId, index.componentOf(node));
+                assertTrue(index.sameComponent(first, node));
+            }
+        }
+        // One distinct label per component, all in range, so the labels cover [0, numComponents)
+        assertEquals(index.numComponents(), labels.size());
+    }
+
+    @Test
+    public void testCondensation() {
+        LookSelectImpl impl = loadGraph(BIG_GRAPH_FILE).getImpl();
+        StringWriter out = new StringWriter();
+        Condensation condensation = impl.condensation(loadGraph(BIG_GRAPH_FILE).getEdgeStream(), out);
+        ComponentIndex index = impl.componentIndex();
+
+        Set<String> expectedEdges = new HashSet<>();
+        for (Edge e : loadGraph(BIG_GRAPH_FILE).getEdgeStream()) {
+            int u = index.componentOf(e.i);
+            int v = index.componentOf(e.j);
+            if (u != v) {
+                expectedEdges.add(String.format("%d,%d", u, v));
+            }
+        }
+        List<String> lines = Lists.newArrayList(out.toString().split("\n"));
+        assertEquals(String.valueOf(index.numComponents()), lines.get(0));
+        assertEquals(expectedEdges.size(), condensation.getNumEdges());
+        assertEquals(expectedEdges, new HashSet<>(lines.subList(1, lines.size())));
+
+        List<Integer> order = condensation.getTopologicalOrder();
+        assertEquals(index.numComponents(), order.size());
+        int[] position = new int[order.size()];
+        for (int i = 0; i < order.size(); i++) {
+            position[order.get(i)] = i;
+        }
+        for (String edge : expectedEdges) {
+            String[] e = edge.split(",");
+            assertTrue(position[Integer.parseInt(e[0])] < position[Integer.parseInt(e[1])]);
+        }
+
+        // A tiny run buffer forces the edges through spilled, merged runs, which must give the same output
+        StringWriter spilledOut = new StringWriter();
+        Condensation spilled = Condensation.write(index, loadGraph(BIG_GRAPH_FILE).getEdgeStream(), spilledOut, 64);
+        assertEquals(out.toString(), spilledOut.toString());
+        assertEquals(order, spilled.getTopologicalOrder());
+    }
+
+    @Test
+    public void testAsyncMatchesBlockingRun() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            AtomicInteger lastPhase = new AtomicInteger(-1);
+            List<Set<Integer>> lsComponents = loadGraph(BIG_GRAPH_FILE)
+                    .stronglyConnectedComponentsAsync(executor,
+                            (phase, edgesProcessed, streamSize) -> lastPhase.set(phase),
+                            Optional.empty())
+                    .get();
+            List<Set<Integer>> jgraphtComponents = computeSCCJGraphT(BIG_GRAPH_FILE);
+            assertTrue(checkComponentLists(jgraphtComponents, lsComponents));
+            assertTrue(lastPhase.get() > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsyncCancellation() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            AtomicReference<CompletableFuture<List<Set<Integer>>>> futureRef = new AtomicReference<>();
+            AtomicInteger checkpoints = new AtomicInteger();
+            CountDownLatch submitted = new CountDownLatch(1);
+            LookSelectImpl impl = loadGraph(BIG_GRAPH_FILE).getImpl();
+            futureRef.set(impl.stronglyConnectedComponentsAsync(executor, (phase, edgesProcessed, streamSize) -> {
+                checkpoints.incrementAndGet();
+                try {
+                    submitted.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                futureRef.get().cancel(false);
+            }));
+            submitted.countDown();
+            executor.submit(() -> {
+            }).get();
+
+            assertTrue(futureRef.get().isCancelled());
+            assertEquals(1, checkpoints.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsyncListenerCancellation() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<List<Set<Integer>>> future = loadGraph(BIG_GRAPH_FILE)
+                    .stronglyConnectedComponentsAsync(executor, (phase, edgesProcessed, streamSize) -> {
+                        throw new CancellationException("Stopped by the listener");
+                    }, Optional.empty());
+            try {
+                future.get(30, TimeUnit.SECONDS);
+                fail("Expected the run to be cancelled");
+            } catch (CancellationException e) {
+                assertTrue(future.isCompletedExceptionally());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsyncDeadline() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<List<Set<Integer>>> future = loadGraph(BIG_GRAPH_FILE)
+                    .stronglyConnectedComponentsAsync(executor, (phase, edgesProcessed, streamSize) -> {
+                    }, Optional.of(Duration.ZERO));
+            try {
+                future.get();
+                fail("Expected the run to time out");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TimeoutException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testShardedEdgeStream() throws IOException {
+        List<Edge> edges = loadEdgeList(BIG_GRAPH_FILE);
+        int numNodes = loadGraph(BIG_GRAPH_FILE).getEdgeStream().getNumNodes();
+        File shardDir = Files.createTempDirectory("fastls-shards").toFile();
+        String[] suffixes = {".txt", ".bin", ".txt.gz", ".bin.gz"};
+        int numShards = 10;
+        int shardSize = (edges.size() + numShards - 1) / numShards;
+        for (int shard = 0; shard < numShards; shard++) {
+            List<Edge> shardEdges = edges.subList(
+                    Math.min(edges.size(), shard * shardSize), Math.min(edges.size(), (shard + 1) * shardSize));
+            writeShard(new File(shardDir, String.format("part-%03d%s", shard, suffixes[shard % suffixes.length])),
+                    shardEdges);
+        }
+        new File(shardDir, "README").createNewFile();
+
+        EdgeStream sharded = EdgeStream.fromShards(shardDir, "part-*", numNodes, 3);
+        for (int run = 0; run < 2; run++) {
+            List<String> shardedEdges = Lists.newArrayList(sharded).stream()
+                    .map(Edge::toString).collect(Collectors.toList());
+            assertEquals(edges.stream().map(Edge::toString).collect(Collectors.toList()), shardedEdges);
+        }
+
+        List<Set<Integer>> lsComponents = new StreamingGraph(sharded)
+                .stronglyConnectedComponents(new LookSelectEngine());
+        assertTrue(checkComponentLists(computeSCCJGraphT(BIG_GRAPH_FILE), lsComponents));
+
+        // A single file is read as-is, even if its name would be a glob matching other files
+        File literal = new File(shardDir, "part-*[0]");
+        writeShard(literal, edges.subList(0, 3));
+        assertEquals(edges.subList(0, 3).stream().map(Edge::toString).collect(Collectors.toList()),
+                Lists.newArrayList(ShardedEdgeSource.ofFile(literal)).stream()
+                        .map(Edge::toString).collect(Collectors.toList()));
+
+        for (File f : shardDir.listFiles()) {
+            f.delete();
+        }
+        shardDir.delete();
+    }
+
+    private static void writeShard(File file, List<Edge> edges) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        if (file.getName().endsWith(".gz")) {
+            out = new GZIPOutputStream(out);
+        }
+        try (DataOutputStream data = new DataOutputStream(out)) {
+            for (Edge e : edges) {
+                if (file.getName().contains(".bin")) {
+                    data.writeInt(e.i);
+                    data.writeInt(e.j);
+                } else {
+                    data.write((e.toString() + "\n").getBytes(StandardCharsets.US_ASCII));
+                }
+            }
+        }
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 1, warmupRounds = 0)
+    public void testAbandonedShardIterators() throws Exception {
+        int numNodes = 1024;
+        Random random = new Random(7);
+        File shardDir = Files.createTempDirectory("fastls-shards").toFile();
+        for (int shard = 0; shard < 4; shard++) {
+            List<Edge> shardEdges = Lists.newArrayList();
+            for (int e = 0; e < 100 * 1000; e++) {
+                shardEdges.add(new Edge(random.nextInt(numNodes), random.nextInt(numNodes)));
+            }
+            writeShard(new File(shardDir, String.format("part-%03d.txt", shard)), shardEdges);
+        }
+        EdgeStream sharded = EdgeStream.fromShards(shardDir, "part-*", numNodes, 2);
+        try {
+            // Stopped early and closed: the decoders are blocked on full queues and must be released
+            Iterator<Edge> closed = sharded.iterator();
+            closed.next();
+            ((Closeable) closed).close();
+            awaitNoShardReaders();
+
+            // Dropped without being closed: the decoders give up once the iterator is collected
+            Iterator<Edge> dropped = sharded.iterator();
+            dropped.next();
+            dropped = null;
+            awaitNoShardReaders();
+
+            // Relabelling keeps the iterator closeable, so the engine it wraps can still stop it early
+            SCCEngine stopping = g -> {
+                Iterator<Edge> relabelled = g.getEdgeStream().iterator();
+                relabelled.next();
+                assertTrue(relabelled instanceof Closeable);
+                try {
+                    ((Closeable) relabelled).close();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                return Collections.emptyList();
+            };
+            new StreamingGraph(sharded).stronglyConnectedComponents(
+                    new RelabelingEngine(stopping, RelabelingEngine.Ordering.FIRST_SEEN));
+            awaitNoShardReaders();
+
+            // A cancelled run closes the iterator of the phase it was stopped in
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                CompletableFuture<List<Set<Integer>>> future = new StreamingGraph(sharded)
+                        .stronglyConnectedComponentsAsync(executor, (phase, edgesProcessed, streamSize) -> {
+                            throw new CancellationException("Stopped by the listener");
+                        }, Optional.empty());
+                try {
+                    future.get(30, TimeUnit.SECONDS);
+                    fail("Expected the run to be cancelled");
+                } catch (CancellationException e) {
+                    awaitNoShardReaders();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        } finally {
+            for (File f : shardDir.listFiles()) {
+                f.delete();
+            }
+            shardDir.delete();
+        }
+    }
+
+    private static void awaitNoShardReaders() throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            boolean isRunning = Thread.getAllStackTraces().keySet().stream()
+                    .anyMatch(thread -> thread.getName().equals("fastls-shard-reader"));
+            if (!isRunning) {
+                return;
+            }
+            System.gc();
+            Thread.sleep(100);
+        }
+        fail("Shard reader threads are still running");
+    }
+
+    @Test
+    public void testSpeculativeClassificationMatchesSequential() {
+        Map<Integer, Set<Integer>> sequential = loadGraph(BIG_GRAPH_FILE).getImpl()
+                .stronglyConnectedComponentsKeyed();
+        LookSelectOptions options = LookSelectOptions.defaults()
+                .withSpeculativeClassification(ForkJoinPool.commonPool());
+        Map<Integer, Set<Integer>> speculative = new LookSelectImpl(loadGraph(BIG_GRAPH_FILE), options)
+                .stronglyConnectedComponentsKeyed();
+        assertEquals(sequential, speculative);
+    }
+
+    @Test
+    public void testOffHeapStorageMatchesHeap() throws IOException {
+        Map<Integer, Set<Integer>> heap = loadGraph(BIG_GRAPH_FILE).getImpl()
+                .stronglyConnectedComponentsKeyed();
+        Map<Integer, Set<Integer>> direct = new LookSelectImpl(loadGraph(BIG_GRAPH_FILE),
+                LookSelectOptions.defaults().withStorage(StorageBackend.direct()))
+                .stronglyConnectedComponentsKeyed();
+        File stateDir = Files.createTempDirectory("fastls-state").toFile();
+        stateDir.deleteOnExit();
+        Map<Integer, Set<Integer>> mapped = new LookSelectImpl(loadGraph(BIG_GRAPH_FILE),
+                LookSelectOptions.defaults().withStorage(StorageBackend.mapped(stateDir)))
+                .stronglyConnectedComponentsKeyed();
+        assertEquals(heap, direct);
+        assertEquals(heap, mapped);
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 1, warmupRounds = 0)
+    public void testRemoteStorageMatchesHeap() throws Exception {
+        LookSelectOptions options = LookSelectOptions.defaults().withSuperNodeRenumbering();
+        Map<Integer, Set<Integer>> heap = new LookSelectImpl(loadGraph(BIG_GRAPH_FILE), options)
+                .stronglyConnectedComponentsKeyed();
+
+        // Workers run as separate JVMs, each printing the port it picked on its first line of output
+        List<Process> workers = Lists.newArrayList();
+        List<InetSocketAddress> addresses = Lists.newArrayList();
+        try {
+            for (int w = 0; w < 2; w++) {
+                Process worker = new ProcessBuilder(
+                        new File(System.getProperty("java.home"), "bin/java").getPath(),
+                        "-cp", System.getProperty("java.class.path"),
+                        RemoteStorageWorker.class.getName(), "0")
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                workers.add(worker);
+                BufferedReader out = new BufferedReader(
+                        new InputStreamReader(worker.getInputStream(), StandardCharsets.US_ASCII));
+                int port = Integer.parseInt(out.readLine().trim());
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            }
+
+            // A cache far smaller than the state forces pages to be evicted and written back throughout the run
+            try (RemoteStorage storage = RemoteStorage.connect(addresses, 32, 4)) {
+                Map<Integer, Set<Integer>> remote = new LookSelectImpl(loadGraph(BIG_GRAPH_FILE),
+                        options.withStorage(storage)).stronglyConnectedComponentsKeyed();
+                assertEquals(heap, remote);
+            }
+            for (Process worker : workers) {
+                assertTrue(worker.waitFor(30, TimeUnit.SECONDS));
+                assertEquals(0, worker.exitValue());
+            }
+        } finally {
+            workers.forEach(Process::destroyForcibly);
+        }
+    }
+
+    @Test
+    public void testRemoteStorageReleasesArrays() throws Exception {
+        List<RemoteStorageWorker> workers = Lists.newArrayList();
+        List<Thread> workerThreads = Lists.newArrayList();
+        List<InetSocketAddress> addresses = Lists.newArrayList();
+        for (int w = 0; w < 2; w++) {
+            RemoteStorageWorker worker = new RemoteStorageWorker(
+                    new ServerSocket(0, 1, InetAddress.getLoopbackAddress()));
+            addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), worker.getPort()));
+            Thread thread = new Thread(worker::serve);
+            thread.start();
+            workers.add(worker);
+            workerThreads.add(thread);
+        }
+
+        int numNodes = loadGraph(MED_GRAPH_FILE).getEdgeStream().getNumNodes();
+        try (RemoteStorage storage = RemoteStorage.connect(addresses, 16)) {
+            // Renumbering replaces every array of the tree, and appending new vertices grows them
+            assertAppendMatches(LookSelectOptions.defaults().withStorage(storage).withSuperNodeRenumbering(),
+                    new Edge(0, 2 * numNodes));
+
+            // Four tree arrays, two union-find arrays and the vertex labels are all that remain
+            assertTrue(storage.getNumLiveArrays() <= 7);
+            for (RemoteStorageWorker worker : workers) {
+                assertEquals(storage.getNumLiveArrays(), worker.getNumArrays());
+            }
+        }
+        for (Thread thread : workerThreads) {
+            thread.join();
+        }
+    }
+
+    @Test
+    public void testRemoteStorageWorkerRejectsBadRequests() throws Exception {
+        RemoteStorageWorker worker = new RemoteStorageWorker(new ServerSocket(0, 1, InetAddress.getLoopbackAddress()));
+        Thread thread = new Thread(worker::serve);
+        thread.start();
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), worker.getPort());
+
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.writeByte(RemoteStorageWorker.ALLOCATE);
+            out.writeInt(7);
+            out.writeInt(10);
+            assertEquals(RemoteStorageWorker.OK, in.readByte());
+            assertEquals(10, in.readInt());
+
+            // Requests that cannot be served are answered with an error, and the connection stays usable
+            int[][] badRequests = {
+                    {RemoteStorageWorker.READ, 7, 5, 10},
+                    {RemoteStorageWorker.READ, 7, -1, 1},
+                    {RemoteStorageWorker.READ, 99, 0, 1},
+                    {RemoteStorageWorker.ALLOCATE, 8, -1},
+                    {RemoteStorageWorker.ALLOCATE, 7, 10},
+                    {RemoteStorageWorker.FREE, 99},
+            };
+            for (int[] request : badRequests) {
+                out.writeByte(request[0]);
+                for (int k = 1; k < request.length; k++) {
+                    out.writeInt(request[k]);
+                }
+                assertEquals(RemoteStorageWorker.ERROR, in.readByte());
+                assertTrue(in.readUTF().length() > 0);
+            }
+            out.writeByte(RemoteStorageWorker.READ);
+            out.writeInt(7);
+            out.writeInt(8);
+            out.writeInt(2);
+            assertEquals(RemoteStorageWorker.OK, in.readByte());
+            assertEquals(0, in.readInt());
+            assertEquals(0, in.readInt());
+
+            // An unacknowledged write out of bounds is reported and the connection is dropped
+            out.writeByte(RemoteStorageWorker.WRITE);
+            out.writeInt(7);
+            out.writeInt(9);
+            out.writeInt(2);
+            out.writeInt(1);
+            out.writeInt(2);
+            assertEquals(RemoteStorageWorker.ERROR, in.readByte());
+            in.readUTF();
+            assertEquals(-1, in.read());
+        }
+
+        // The worker keeps serving new connections
+        try (RemoteStorage storage = RemoteStorage.connect(Collections.singletonList(address), 1)) {
+            // With a single cached page, touching the first page writes the last one back
+            IntArray array = storage.allocate(3000);
+            array.set(2999, 42);
+            array.set(0, 1);
+            assertEquals(42, array.get(2999));
+        }
+        thread.join();
+    }
+
+    @Test
+    public void testCompressedEdgeStream() {
+        List<Edge> edges = loadEdgeList(BIG_GRAPH_FILE);
+        CompressedEdgeList compressed = CompressedEdgeList.of(edges);
+        assertEquals(edges.size(), compressed.getNumEdges());
+        assertTrue(compressed.sizeInBytes() < 8L * edges.size());
+
+        List<String> expected = edges.stream().map(Edge::toString).collect(Collectors.toList());
+        EdgeStream stream = EdgeStream.compress(loadGraph(BIG_GRAPH_FILE).getEdgeStream());
+        List<Set<Integer>> jgraphtComponents = computeSCCJGraphT(BIG_GRAPH_FILE);
+        for (int run = 0; run < 2; run++) {
+            assertEquals(expected, Lists.newArrayList(stream).stream()
+                    .map(Edge::toString).collect(Collectors.toList()));
+            assertTrue(checkComponentLists(jgraphtComponents,
+                    new StreamingGraph(stream).stronglyConnectedComponents(new LookSelectEngine())));
+        }
+    }
+
+    @Test
+    public void testWindowContraction() {
+        List<Set<Integer>> jgraphtComponents = computeSCCJGraphT(BIG_GRAPH_FILE);
+        LookSelectImpl plain = loadGraph(BIG_GRAPH_FILE).getImpl();
+        assertTrue(checkComponentLists(jgraphtComponents, plain.stronglyConnectedComponents()));
+        for (int windowSize : new int[]{1024, 8192, 65536}) {
+            LookSelectImpl windowed = new LookSelectImpl(loadGraph(BIG_GRAPH_FILE),
+                    LookSelectOptions.defaults().withContractionWindow(windowSize));
+            assertTrue(checkComponentLists(jgraphtComponents, windowed.stronglyConnectedComponents()));
+            assertTrue(windowed.getPhaseCount() <= plain.getPhaseCount());
+            LOG.info("Window {}: {} phases ({} contractions), plain: {} phases", new Object[]{windowSize,
+                    windowed.getPhaseCount(), windowed.getWindowContractions(), plain.getPhaseCount()});
+        }
+    }
+
+    @Test
+    public void testEnginesMatchJGraphT() {
+        List<Set<Integer>> jgraphtComponents = computeSCCJGraphT(BIG_GRAPH_FILE);
+        List<SCCEngine> engines = ImmutableList.of(
+                new LookSelectEngine(), new TarjanEngine(), JGraphTEngine.gabow(), EngineSelector.defaults());
+        for (SCCEngine engine : engines) {
+            assertTrue(checkComponentLists(jgraphtComponents,
+                    loadGraph(BIG_GRAPH_FILE).stronglyConnectedComponents(engine)));
+        }
+    }
+
+    @Test
+    public void testLookSelectMatchesTarjanOnRandomGraphs() {
+        // The cycle 13 -> 36 -> 46 -> 13 is only found if cross edges into shallower nodes deepen T
+        Set<Integer> nodes = IntStream.range(0, 47).boxed().collect(Collectors.toSet());
+        List<Edge> edges = ImmutableList.of(
+                new Edge(44, 13), new Edge(46, 13), new Edge(36, 46), new Edge(34, 36), new Edge(13, 36));
+        assertTrue(checkComponentLists(
+                new StreamingGraph(nodes, new EdgeStream(edges)).stronglyConnectedComponents(new TarjanEngine()),
+                new StreamingGraph(nodes, new EdgeStream(edges)).stronglyConnectedComponents(new LookSelectEngine())));
+
+        Random random = new Random(3);
+        for (int run = 0; run < 500; run++) {
+            int numNodes = 2 + random.nextInt(60);
+            List<Edge> randomEdges = Lists.newArrayList();
+            for (int e = random.nextInt(3 * numNodes); e > 0; e--) {
+                randomEdges.add(new Edge(random.nextInt(numNodes), random.nextInt(numNodes)));
+            }
+            Set<Integer> randomNodes = IntStream.range(0, numNodes).boxed().collect(Collectors.toSet());
+            assertEquals(
+                    new HashSet<>(new StreamingGraph(randomNodes, new EdgeStream(randomEdges))
+                            .stronglyConnectedComponents(new TarjanEngine())),
+                    new HashSet<>(new StreamingGraph(randomNodes, new EdgeStream(randomEdges))
+                            .stronglyConnectedComponents(new LookSelectEngine())));
+        }
+    }
+
+    @Test
+    public void testEngineSelection() {
+        StreamingGraph graph = new StreamingGraph(new EdgeStream(loadEdgeList(MED_GRAPH_FILE)));
+        assertTrue(graph.getEdgeStream().estimatedEdgeCount().isPresent());
+        assertTrue(EngineSelector.defaults().select(graph) instanceof TarjanEngine);
+        assertTrue(EngineSelector.defaults().withMemoryBudget(0).select(graph) instanceof LookSelectEngine);
+
+        // However small the graph looks, an unknown number of edges could exceed any budget
+        StreamingGraph unknownSize = loadGraph(MED_GRAPH_FILE);
+        assertTrue(!unknownSize.getEdgeStream().estimatedEdgeCount().isPresent());
+        assertTrue(EngineSelector.defaults().withMemoryBudget(Long.MAX_VALUE)
+                .select(unknownSize) instanceof LookSelectEngine);
+
+        assertEquals(2048, TarjanEngine.grow(1024));
+        assertEquals(Integer.MAX_VALUE - 8, TarjanEngine.grow(Integer.MAX_VALUE / 2 + 1));
+        try {
+            TarjanEngine.grow(Integer.MAX_VALUE - 8);
+            fail("Expected growth past the maximum array size to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testWccSplitEngine() {
+        List<Set<Integer>> jgraphtComponents = computeSCCJGraphT(BIG_GRAPH_FILE);
+        assertTrue(checkComponentLists(jgraphtComponents,
+                loadGraph(BIG_GRAPH_FILE).stronglyConnectedComponents(new WccSplitEngine())));
+
+        // Disjoint copies of a graph, plus isolated vertices, solved with Look-Select per component
+        List<Edge> edges = loadEdgeList(MED_GRAPH_FILE);
+        int numNodes = loadGraph(MED_GRAPH_FILE).getEdgeStream().getNumNodes();
+        int copies = 8;
+        List<Edge> fragmented = Lists.newArrayList();
+        for (int k = 0; k < copies; k++) {
+            for (Edge edge : edges) {
+                fragmented.add(new Edge(edge.i + k * numNodes, edge.j + k * numNodes));
+            }
+        }
+        Set<Integer> nodes = IntStream.range(0, copies * numNodes + 3).boxed().collect(Collectors.toSet());
+        List<Set<Integer>> expected = new StreamingGraph(nodes, new EdgeStream(fragmented))
+                .stronglyConnectedComponents(new TarjanEngine());
+        WccSplitEngine engine = new WccSplitEngine(new LookSelectEngine(), ForkJoinPool.commonPool());
+        assertTrue(checkComponentLists(expected,
+                new StreamingGraph(nodes, new EdgeStream(fragmented)).stronglyConnectedComponents(engine)));
+
+        // With every component spilled, none of them may be handed over with an edge count
+        AtomicInteger countedComponents = new AtomicInteger();
+        SCCEngine recording = g -> {
+            if (g.getEdgeStream().estimatedEdgeCount().isPresent()) {
+                countedComponents.incrementAndGet();
+            }
+            return EngineSelector.defaults().stronglyConnectedComponents(g);
+        };
+        WccSplitEngine spilling = new WccSplitEngine(recording, ForkJoinPool.commonPool(), 0);
+        assertTrue(checkComponentLists(expected,
+                new StreamingGraph(nodes, new EdgeStream(fragmented)).stronglyConnectedComponents(spilling)));
+        assertEquals(0, countedComponents.get());
+    }
+
+    @Test
+    public void testRelabelingEngine() {
+        List<Set<Integer>> jgraphtComponents = computeSCCJGraphT(BIG_GRAPH_FILE);
+        for (RelabelingEngine.Ordering ordering : RelabelingEngine.Ordering.values()) {
+            SCCEngine engine = new RelabelingEngine(new LookSelectEngine(), ordering);
+            assertTrue(checkComponentLists(jgraphtComponents,
+                    loadGraph(BIG_GRAPH_FILE).stronglyConnectedComponents(engine)));
+        }
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 1, warmupRounds = 0)
+    public void testRelabelingLocality() {
+        int numNodes = 1 << 15;
+        int clusterSize = 64;
+        List<Edge> clustered = generateClusteredGraph(numNodes, clusterSize, 4, new Random(42));
+        Set<Integer> nodes = IntStream.range(0, numNodes).boxed().collect(Collectors.toSet());
+        List<Set<Integer>> expected = new StreamingGraph(nodes, new EdgeStream(clustered))
+                .stronglyConnectedComponents(new LookSelectEngine());
+
+        // Clusters are scattered over the id space, so BFS must pull each one into a narrow range of ids
+        int[] identity = IntStream.range(0, numNodes).toArray();
+        double identityLocal = localEdgeFraction(clustered, identity, clusterSize);
+        for (RelabelingEngine.Ordering ordering : RelabelingEngine.Ordering.values()) {
+            int[] oldIds = RelabelingEngine.order(numNodes, clustered, ordering);
+            int[] newIds = new int[numNodes];
+            for (int id = 0; id < numNodes; id++) {
+                newIds[oldIds[id]] = id;
+            }
+            double local = localEdgeFraction(clustered, newIds, clusterSize);
+            LOG.info("{} relabeling: {} of edges local (identity {})", new Object[]{ordering, local, identityLocal});
+            if (ordering == RelabelingEngine.Ordering.BFS) {
+                assertTrue(local > 10 * identityLocal);
+            }
+            assertTrue(checkComponentLists(expected, new StreamingGraph(nodes, new EdgeStream(clustered))
+                    .stronglyConnectedComponents(new RelabelingEngine(new LookSelectEngine(), ordering))));
+        }
+    }
+
+    /**
+     * Returns the fraction of edges whose endpoints are fewer than <code>window</code> ids apart.
+     */
+    private static double localEdgeFraction(List<Edge> edges, int[] newIds, int window) {
+        return edges.stream().filter(e -> Math.abs(newIds[e.i] - newIds[e.j]) < window).count()
+                / (double) edges.size();
+    }
+
+    @Test
+    public void testSuperNodeRenumbering() {
+        LookSelectOptions options = LookSelectOptions.defaults().withSuperNodeRenumbering();
+        List<Set<Integer>> jgraphtComponents = computeSCCJGraphT(BIG_GRAPH_FILE);
+        LookSelectImpl renumbered = new LookSelectImpl(loadGraph(BIG_GRAPH_FILE), options);
+        assertTrue(checkComponentLists(jgraphtComponents, renumbered.stronglyConnectedComponents()));
+        checkComponentIndex(jgraphtComponents, renumbered.componentIndex());
+
+        // Appended edges refer to original vertex ids, including new ones
+        int numNodes = loadGraph(MED_GRAPH_FILE).getEdgeStream().getNumNodes();
+        assertAppendMatches(options, new Edge(0, numNodes + 1), new Edge(numNodes + 1, 0));
+    }
+
+    @Test
+    public void testDirtyRegionTracking() {
+        // Skipping stable edges must leave every phase, and hence the final tree, exactly as it was
+        int numDagNodes = 1 << 13;
+        Set<Integer> dagNodes = IntStream.range(0, numDagNodes).boxed().collect(Collectors.toSet());
+        StreamingGraph dag = new StreamingGraph(dagNodes,
+                new EdgeStream(generateDag(numDagNodes, 4 * numDagNodes, new Random(42))));
+        StreamingGraph large = new StreamingGraph(EdgeStream.compress(loadGraph(BIG_GRAPH_FILE).getEdgeStream()));
+        for (StreamingGraph graph : ImmutableList.of(large, dag)) {
+            LookSelectImpl plain = new LookSelectImpl(graph);
+            LookSelectImpl tracked = new LookSelectImpl(graph, LookSelectOptions.defaults().withDirtyRegionTracking());
+            assertEquals(plain.stronglyConnectedComponentsKeyed(), tracked.stronglyConnectedComponentsKeyed());
+            assertEquals(plain.getPhaseCount(), tracked.getPhaseCount());
+            if (graph == dag) {
+                // Every vertex of a DAG is its own component, after enough phases to leave most paths untouched
+                assertEquals(numDagNodes, tracked.stronglyConnectedComponents().size());
+                assertTrue(tracked.getStableEdges() > 0);
+            }
+        }
+
+        List<Set<Integer>> jgraphtComponents = computeSCCJGraphT(BIG_GRAPH_FILE);
+        LookSelectOptions combined = LookSelectOptions.defaults().withDirtyRegionTracking()
+                .withSuperNodeRenumbering().withContractionWindow(1024);
+        assertTrue(checkComponentLists(jgraphtComponents,
+                new LookSelectImpl(loadGraph(BIG_GRAPH_FILE), combined).stronglyConnectedComponents()));
+
+        // Appended edges were never classified, so they must not be passed through
+        assertAppendMatches(LookSelectOptions.defaults().withDirtyRegionTracking());
+    }
+
+    /**
+     * Generates a random DAG, whose edges all point from lower to higher ids, in random order.
+     */
+    private static List<Edge> generateDag(int numNodes, int numEdges, Random random) {
+        List<Edge> edges = Lists.newArrayList();
+        while (edges.size() < numEdges) {
+            int u = random.nextInt(numNodes);
+            int v = random.nextInt(numNodes);
+            if (u != v) {
+                edges.add(new Edge(Math.min(u, v), Math.max(u, v)));
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Generates clusters of vertices that are densely connected among themselves, each with a few edges to
+     * other clusters, and scatters the vertex ids randomly so that clusters have no id locality.
+     */
+    private static List<Edge> generateClusteredGraph(int numNodes, int clusterSize, int degree, Random random) {
+        List<Integer> ids = IntStream.range(0, numNodes).boxed().collect(Collectors.toList());
+        Collections.shuffle(ids, random);
+        List<Edge> edges = Lists.newArrayList();
+        for (int v = 0; v < numNodes; v++) {
+            int clusterStart = v - v % clusterSize;
+            for (int d = 0; d < degree; d++) {
+                int w = d == 0 && random.nextInt(8) == 0
+                        ? random.nextInt(numNodes)
+                        : clusterStart + random.nextInt(Math.min(clusterSize, numNodes - clusterStart));
+                edges.add(new Edge(ids.get(v), ids.get(w)));
+            }
+        }
+        Collections.shuffle(edges, random);
+        return edges;
+    }
+
     private static boolean checkComponentLists(List<Set<Integer>> c1, List<Set<Integer>> c2) {
         if (c1 == c2 || c1.equals(c2)) {
             return true;
@@ -233,6 +1011,10 @@ public class TestStreamingGraph {
     }
 
 
+    private static List<Edge> loadEdgeList(String fileName) {
+        return Lists.newArrayList(loadGraph(fileName).getEdgeStream());
+    }
+
     private static StreamingGraph loadGraph(String fileName) {
         int bufferSize = 8 * 1024;
 